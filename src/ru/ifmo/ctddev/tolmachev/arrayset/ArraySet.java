@@ -1,95 +1,503 @@
 package ru.ifmo.ctddev.tolmachev.arrayset;
 
 import java.util.*;
+import java.util.function.ToLongFunction;
 
 /**
  * Created by daniil on 27.02.16.
  */
 public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    /**
+     * Types whose natural order is compared without interface call if all elements of set have one of them.
+     */
+    private static final List<Class<?>> NATURAL_TYPES = Arrays.asList(String.class, Integer.class, Long.class, UUID.class);
+
     final private Comparator<? super T> comparator;
+    /**
+     * Sorted list of all elements of the root set, which is shared by all of its views.
+     */
     final private List<T> data;
+    /**
+     * Comparator by which {@code data} is sorted.
+     */
+    final private Comparator<? super T> order;
+    final private EytzingerIndex<T> index;
+    /**
+     * Class of all elements if set is ordered naturally and it is one of {@code NATURAL_TYPES}, otherwise null.
+     */
+    final private Class<?> naturalType;
+    final private ToLongFunction<? super T> prefix;
+    /**
+     * Precomputed prefixes of {@code data}, if set was constructed with prefix function.
+     */
+    final private long[] prefixes;
+    /**
+     * Position of the first element of this set in {@code data}.
+     */
+    final private int from;
+    final private int size;
+    final private boolean descending;
 
     public ArraySet() {
         this(Collections.emptyList(), null);
     }
 
+    /**
+     * Constructs set of elements of given collection ordered by given comparator.
+     * <p>
+     * Elements are copied to an array, sorted and deduplicated in one linear pass; of equal elements
+     * the first one in iteration order is kept. Sorting is skipped for a {@code SortedSet} with
+     * equal comparator and for collections which are already sorted.
+     * <p>
+     * If comparator is {@code null} and all elements are {@code String}s, {@code Integer}s, {@code Long}s
+     * or {@code UUID}s of one type, searches compare them directly instead of calling {@code Comparable}.
+     *
+     * @param collection elements of set.
+     * @param comparator comparator of elements or {@code null} for natural ordering.
+     */
     public ArraySet(Collection<T> collection, Comparator<? super T> comparator) {
-        this.comparator = comparator;
-        Set<T> s = new TreeSet<>(comparator);
-        s.addAll(collection);
-        data = new ArrayList<>();
-        data.addAll(s);
+        this(collection, comparator, false);
+    }
+
+    /**
+     * Constructs set of elements of given collection ordered by given comparator.
+     * <p>
+     * Read-optimized set additionally keeps its elements in Eytzinger order, which makes searches
+     * on large sets touch fewer cache lines, at the cost of one more array of references and ranks.
+     * Views of set share this layout. Sets of more than 2^30 elements are searched without it.
+     *
+     * @param collection elements of set.
+     * @param comparator comparator of elements or {@code null} for natural ordering.
+     * @param readOptimized true if Eytzinger layout should be used for searches.
+     */
+    public ArraySet(Collection<T> collection, Comparator<? super T> comparator, boolean readOptimized) {
+        this(sortedUnique(collection, comparator), comparator, readOptimized, true, null);
+    }
+
+    /**
+     * Constructs set of elements of given collection ordered by given comparator, which keeps
+     * {@code long} prefix of every element.
+     * <p>
+     * Searches compare prefixes stored in a {@code long} array and call comparator only if prefixes are equal.
+     * Prefix function should agree with comparator: if {@code a < b}, then {@code prefix(a) <= prefix(b)}.
+     * Prefix is computed once for every element and once for every searched key.
+     *
+     * @param collection elements of set.
+     * @param comparator comparator of elements or {@code null} for natural ordering.
+     * @param prefix function which maps elements to prefixes.
+     * @see ArraySets#stringPrefix(String)
+     */
+    public ArraySet(Collection<T> collection, Comparator<? super T> comparator, ToLongFunction<? super T> prefix) {
+        this(sortedUnique(collection, comparator), comparator, false, false, Objects.requireNonNull(prefix));
     }
 
     public ArraySet(Collection<T> collection) {
         this(collection, null);
     }
 
-    private ArraySet(List<T> list, Comparator<? super T> comparator) {
-        this.data = list;
-        this.comparator = comparator;
+    /**
+     * Constructs root set of list which is sorted by given comparator and contains no equal elements.
+     */
+    private ArraySet(List<T> data, Comparator<? super T> order, boolean readOptimized, boolean natural,
+                     ToLongFunction<? super T> prefix) {
+        this.data = data;
+        this.order = order;
+        this.comparator = order;
+        this.index = readOptimized && data.size() <= EytzingerIndex.MAX_SIZE
+                ? new EytzingerIndex<>(data, order) : null;
+        this.naturalType = natural && order == null ? naturalType(data) : null;
+        this.prefix = prefix;
+        this.prefixes = prefix == null ? null : data.stream().mapToLong(prefix).toArray();
+        this.from = 0;
+        this.size = data.size();
+        this.descending = false;
+    }
+
+    /**
+     * Constructs view of range of list of given set. Views of views are built from the same list,
+     * so element access costs the same at any depth.
+     */
+    private ArraySet(ArraySet<T> set, int from, int size, boolean descending) {
+        this.data = set.data;
+        this.order = set.order;
+        this.index = set.index;
+        this.naturalType = set.naturalType;
+        this.prefix = set.prefix;
+        this.prefixes = set.prefixes;
+        this.from = from;
+        this.size = size;
+        this.descending = descending;
+        this.comparator = descending ? Collections.reverseOrder(order) : order;
+    }
+
+    /**
+     * Wraps list which is already sorted by given comparator and contains no equal elements.
+     * List is neither copied nor checked, so natural order fast path is not used: it is meant
+     * for lists which compute their elements on access.
+     */
+    static <T> ArraySet<T> ofSorted(List<T> list, Comparator<? super T> comparator) {
+        return new ArraySet<>(list, comparator, false, false, null);
+    }
+
+    /**
+     * Wraps list which is already sorted by given comparator and contains no equal elements.
+     * If comparator is null, checks whether natural order fast path applies to it.
+     */
+    static <T> ArraySet<T> ofSortedList(List<T> list, Comparator<? super T> comparator) {
+        return new ArraySet<>(list, comparator, false, true, null);
+    }
+
+    /**
+     * Wraps list which is already sorted in natural order and contains no equal elements,
+     * checking only whether natural order fast path applies to it.
+     */
+    static <T> ArraySet<T> ofSortedNatural(List<T> list) {
+        return ofSortedList(list, null);
+    }
+
+    private static Class<?> naturalType(List<?> data) {
+        if (data.isEmpty() || !NATURAL_TYPES.contains(data.get(0).getClass())) {
+            return null;
+        }
+        Class<?> type = data.get(0).getClass();
+        for (Object element : data) {
+            if (element.getClass() != type) {
+                return null;
+            }
+        }
+        return type;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> List<T> sortedUnique(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        T[] array = (T[]) collection.toArray();
+        int size = array.length;
+        boolean unique = collection instanceof SortedSet
+                && Objects.equals(((SortedSet<?>) collection).comparator(), comparator);
+        if (!unique) {
+            if (array.length == 1) {
+                // TreeSet rejects single null or non-comparable element by comparing it with itself
+                compare(array[0], array[0], comparator);
+            }
+            if (!isSorted(array, comparator)) {
+                Arrays.sort(array, comparator);
+            }
+            size = unique(array, comparator);
+        }
+        return Arrays.asList(size == array.length ? array : Arrays.copyOf(array, size));
+    }
+
+    private static <T> boolean isSorted(T[] array, Comparator<? super T> comparator) {
+        for (int i = 1; i < array.length; i++) {
+            if (compare(array[i - 1], array[i], comparator) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves first of every run of equal elements of sorted array to its beginning.
+     *
+     * @return count of unique elements.
+     */
+    private static <T> int unique(T[] array, Comparator<? super T> comparator) {
+        int size = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (size == 0 || compare(array[size - 1], array[i], comparator) != 0) {
+                array[size++] = array[i];
+            }
+        }
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> int compare(T a, T b, Comparator<? super T> comparator) {
+        return comparator == null ? ((Comparable<? super T>) a).compareTo(b) : comparator.compare(a, b);
+    }
+
+    /**
+     * Returns element with given index in order of this set.
+     */
+    T get(int index) {
+        return data.get(descending ? from + size - 1 - index : from + index);
+    }
+
+    /**
+     * Returns position in {@code data} of the first element of this set which is not less than key
+     * in order of {@code data}, or end of this set if there is no such element.
+     */
+    private int lowerBound(T t) {
+        return bound(t, false);
+    }
+
+    /**
+     * Returns position in {@code data} of the first element of this set which is greater than key
+     * in order of {@code data}, or end of this set if there is no such element.
+     */
+    private int upperBound(T t) {
+        return bound(t, true);
+    }
+
+    private int bound(T t, boolean inclusive) {
+        if (index != null) {
+            return clamp(inclusive ? index.upperBound(t) : index.lowerBound(t));
+        }
+        int low = from;
+        int high = from + size;
+        if (prefixes != null) {
+            long key = prefix.applyAsLong(t);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                long p = prefixes[middle];
+                if (p < key || p == key && before(compare(data.get(middle), t, order), inclusive)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+        } else if (naturalType != null && t != null && t.getClass() == naturalType) {
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (before(compareNatural(data.get(middle), t), inclusive)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+        } else {
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (before(compare(data.get(middle), t, order), inclusive)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+        }
+        return low;
     }
 
-    private int search(T t) {
-        return Collections.binarySearch(data, t, comparator);
+    private static boolean before(int c, boolean inclusive) {
+        return inclusive ? c <= 0 : c < 0;
     }
 
-    private int lowerIndex(T t) {
-        int i = search(t);
-        if (i < 0) {
-            i = -(i + 1);
+    /**
+     * Compares two elements of {@code naturalType} by calls which are bound statically.
+     */
+    private int compareNatural(Object a, Object b) {
+        if (naturalType == Integer.class) {
+            return Integer.compare((Integer) a, (Integer) b);
+        } else if (naturalType == Long.class) {
+            return Long.compare((Long) a, (Long) b);
+        } else if (naturalType == String.class) {
+            return ((String) a).compareTo((String) b);
+        } else {
+            return ((UUID) a).compareTo((UUID) b);
         }
-        return i - 1;
+    }
+
+    private int clamp(int position) {
+        return Math.min(Math.max(position, from), from + size);
+    }
+
+    /**
+     * Converts position in {@code data} to index in this set.
+     * Positions just before and just after this set are converted to -1 and size.
+     */
+    private int indexOf(int position) {
+        return descending ? from + size - 1 - position : position - from;
+    }
+
+    private T elementAt(int i) {
+        return i < 0 || i >= size ? null : get(i);
+    }
+
+    /**
+     * Returns index in this set of the greatest element less than key, -1 if there is no such element.
+     * Other index methods are similar, {@link #ceilingIndex} and {@link #higherIndex} return size if there is none.
+     */
+    int lowerIndex(T t) {
+        return descending ? indexOf(upperBound(t)) : indexOf(lowerBound(t) - 1);
     }
 
     @Override
     public T lower(T t) {
-        int i = lowerIndex(t);
-        return i == -1 ? null : data.get(i);
+        return elementAt(lowerIndex(t));
     }
 
-    private int floorIndex(T t) {
-        int i = search(t);
-        if (i < 0) {
-            i = -(i + 1) - 1;
-        }
-        return i;
+    int floorIndex(T t) {
+        return descending ? indexOf(lowerBound(t)) : indexOf(upperBound(t) - 1);
     }
 
     @Override
     public T floor(T t) {
-        int i = floorIndex(t);
-        return i == -1 ? null : data.get(i);
+        return elementAt(floorIndex(t));
     }
 
-    private int ceilingIndex(T t) {
-        int i = search(t);
-        if (i < 0) {
-            i = -(i + 1);
-        }
-        return i;
+    int ceilingIndex(T t) {
+        return descending ? indexOf(upperBound(t) - 1) : indexOf(lowerBound(t));
     }
 
     @Override
     public T ceiling(T t) {
-        int i = ceilingIndex(t);
-        return i == data.size() ? null : data.get(i);
+        return elementAt(ceilingIndex(t));
     }
 
-    private int higherIndex(T t) {
-        int i = search(t);
-        if (i < 0) {
-            i = -(i + 1);
-        } else {
-            ++i;
-        }
-        return i;
+    int higherIndex(T t) {
+        return descending ? indexOf(lowerBound(t) - 1) : indexOf(upperBound(t));
     }
 
     @Override
     public T higher(T t) {
-        int i = higherIndex(t);
-        return i == data.size() ? null : data.get(i);
+        return elementAt(higherIndex(t));
+    }
+
+    /**
+     * Returns floor of every key, {@code null} for keys without floor.
+     * <p>
+     * Every search starts from the position of the previous one and gallops to the answer, so
+     * if keys are sorted by comparator of this set, the whole batch takes O(m log(n / m))
+     * comparisons. Keys in any other order give correct results too, only slower.
+     *
+     * @param keys keys to look up.
+     * @return list of floors in order of keys.
+     */
+    public List<T> floorEach(Iterator<? extends T> keys) {
+        return lookupEach(keys, true, -1);
+    }
+
+    /**
+     * Returns floor of every key of array, see {@link #floorEach(Iterator)}.
+     *
+     * @param keys keys to look up.
+     * @return list of floors in order of keys.
+     */
+    public List<T> floorEach(T[] keys) {
+        return floorEach(Arrays.asList(keys).iterator());
+    }
+
+    /**
+     * Returns ceiling of every key, {@code null} for keys without ceiling.
+     * Searches are done as in {@link #floorEach(Iterator)}.
+     *
+     * @param keys keys to look up.
+     * @return list of ceilings in order of keys.
+     */
+    public List<T> ceilingEach(Iterator<? extends T> keys) {
+        return lookupEach(keys, false, 0);
+    }
+
+    public List<T> ceilingEach(T[] keys) {
+        return ceilingEach(Arrays.asList(keys).iterator());
+    }
+
+    /**
+     * Returns the greatest element strictly less than every key, {@code null} for keys without one.
+     * Searches are done as in {@link #floorEach(Iterator)}.
+     *
+     * @param keys keys to look up.
+     * @return list of lower elements in order of keys.
+     */
+    public List<T> lowerEach(Iterator<? extends T> keys) {
+        return lookupEach(keys, false, -1);
+    }
+
+    public List<T> lowerEach(T[] keys) {
+        return lowerEach(Arrays.asList(keys).iterator());
+    }
+
+    /**
+     * Returns the least element strictly greater than every key, {@code null} for keys without one.
+     * Searches are done as in {@link #floorEach(Iterator)}.
+     *
+     * @param keys keys to look up.
+     * @return list of higher elements in order of keys.
+     */
+    public List<T> higherEach(Iterator<? extends T> keys) {
+        return lookupEach(keys, true, 0);
+    }
+
+    public List<T> higherEach(T[] keys) {
+        return higherEach(Arrays.asList(keys).iterator());
+    }
+
+    /**
+     * Checks which keys are contained in this set.
+     * Searches are done as in {@link #floorEach(Iterator)}.
+     *
+     * @param keys keys to look up.
+     * @return set of positions of contained keys.
+     */
+    public BitSet containsEach(Iterator<? extends T> keys) {
+        BitSet result = new BitSet();
+        int finger = 0;
+        for (int i = 0; keys.hasNext(); i++) {
+            T key = keys.next();
+            finger = gallopBound(finger, key, false);
+            if (finger < size && compare(get(finger), key, comparator) == 0) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    public BitSet containsEach(T[] keys) {
+        return containsEach(Arrays.asList(keys).iterator());
+    }
+
+    /**
+     * Looks up every key by {@link #gallopBound} and returns element at {@code bound + shift}.
+     */
+    private List<T> lookupEach(Iterator<? extends T> keys, boolean inclusive, int shift) {
+        List<T> result = new ArrayList<>();
+        int finger = 0;
+        while (keys.hasNext()) {
+            finger = gallopBound(finger, keys.next(), inclusive);
+            int i = finger + shift;
+            result.add(elementAt(i));
+        }
+        return result;
+    }
+
+    private boolean before(int i, T key, boolean inclusive) {
+        return before(compare(get(i), key, comparator), inclusive);
+    }
+
+    /**
+     * Returns index of the first element which is not before key: greater than key if {@code inclusive},
+     * not less than key otherwise. Search gallops from {@code finger} in the direction of the answer.
+     */
+    private int gallopBound(int finger, T key, boolean inclusive) {
+        int low;
+        int high;
+        if (finger < size && before(finger, key, inclusive)) {
+            low = finger;
+            high = finger + 1;
+            for (int step = 2; high < size && before(high, key, inclusive); step <<= 1) {
+                low = high;
+                high = size - low > step ? low + step : size;
+            }
+            low++;
+        } else {
+            high = finger;
+            low = finger - 1;
+            for (int step = 2; low >= 0 && !before(low, key, inclusive); step <<= 1) {
+                high = low;
+                low = high - step;
+            }
+            low = Math.max(low + 1, 0);
+        }
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (before(middle, key, inclusive)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 
     @Override
@@ -104,7 +512,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
     @Override
     public int size() {
-        return data.size();
+        return size;
     }
 
     @Override
@@ -114,44 +522,52 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
     @Override
     public boolean contains(Object o) {
-        return search((T) o) >= 0;
+        T t = (T) o;
+        int position = lowerBound(t);
+        return position < from + size && compare(data.get(position), t, order) == 0;
     }
 
     @Override
     public Iterator<T> iterator() {
-        return Collections.unmodifiableList(data).iterator();
+        return new ArraySetIterator(false);
     }
 
     @Override
     public NavigableSet<T> descendingSet() {
-        return new ArraySet<>(new CustomList<>(data), Collections.reverseOrder(comparator));
+        return new ArraySet<>(this, from, size, !descending);
     }
 
     @Override
     public Iterator<T> descendingIterator() {
-        return descendingSet().iterator();
+        return new ArraySetIterator(true);
+    }
+
+    /**
+     * Returns view of elements of this set with indices from {@code low} inclusive to {@code high} exclusive.
+     */
+    private ArraySet<T> view(int low, int high) {
+        int length = Math.max(high - low, 0);
+        int start = descending ? from + size - low - length : from + low;
+        return new ArraySet<>(this, start, length, descending);
     }
 
     @Override
     public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
         int from = fromInclusive ? ceilingIndex(fromElement) : higherIndex(fromElement);
         int to = toInclusive ? floorIndex(toElement) : lowerIndex(toElement);
-        if (from > to) {
-            return new ArraySet<>(Collections.emptyList(), comparator);
-        }
-        return new ArraySet<>(data.subList(from, to + 1), comparator);
+        return view(from, to + 1);
     }
 
     @Override
     public NavigableSet<T> headSet(T toElement, boolean inclusive) {
         int to = inclusive ? floorIndex(toElement) : lowerIndex(toElement);
-        return new ArraySet<>(data.subList(0, to + 1), comparator);
+        return view(0, to + 1);
     }
 
     @Override
     public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
         int from = inclusive ? ceilingIndex(fromElement) : higherIndex(fromElement);
-        return new ArraySet<>(data.subList(from, data.size()), comparator);
+        return view(from, size);
     }
 
     @Override
@@ -179,7 +595,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        return data.get(0);
+        return get(0);
     }
 
     @Override
@@ -187,6 +603,29 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        return data.get(size() - 1);
+        return get(size - 1);
+    }
+
+    private class ArraySetIterator implements Iterator<T> {
+        private final boolean reversed;
+        private int next;
+
+        private ArraySetIterator(boolean reversed) {
+            this.reversed = reversed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            int i = next++;
+            return get(reversed ? size - 1 - i : i);
+        }
     }
 }
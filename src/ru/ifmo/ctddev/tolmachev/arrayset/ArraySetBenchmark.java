@@ -0,0 +1,434 @@
+package ru.ifmo.ctddev.tolmachev.arrayset;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Measures operations of {@code ArraySet}.
+ * <p>
+ * Usage : ArraySetBenchmark [construction|search|views|operations|memory|keys|load|all [size [repeats]]].
+ * Search is measured on sets from 1K elements (fits into L1) up to given size,
+ * which should be much larger than last level cache.
+ * Views are measured on chains of nested subsets and descending sets of growing depth.
+ * <p>
+ * Operations compare {@code ArraySet} with {@code TreeSet} and {@code ConcurrentSkipListSet} on
+ * {@code contains}, {@code floor}, {@code ceiling}, iteration, descending iteration and nested range
+ * queries for natural, custom and reversed comparators. Memory is heap retained by a set
+ * per element, not counting elements themselves. First repeats warm up JIT and should be ignored.
+ * <p>
+ * Keys compare natural order fast path, natural order through comparator and precomputed prefixes
+ * on sets of {@code String}, {@code Integer}, {@code Long} and {@code UUID}, searched in turn,
+ * so calls of {@code compareTo} are megamorphic as in applications with sets of several types.
+ * <p>
+ * Load compares reading a set written by {@code ArraySetCodec} with Java deserialization of
+ * {@code ArrayList} of its elements followed by construction of {@code ArraySet}.
+ */
+public class ArraySetBenchmark {
+    private static final int PROBES = 1 << 20;
+    private static final int MAX_VIEW_DEPTH = 64;
+    private static final int MIN_SIZE = 1024;
+    private static final int SIZE_STEP = 16;
+    /**
+     * Memory is measured on that many elements in several copies of a set, so small sets are not lost in noise.
+     */
+    private static final int MEMORY_ELEMENTS = 1 << 22;
+
+    private static final Map<String, Comparator<Integer>> COMPARATORS = new LinkedHashMap<>();
+    private static final Map<String, BiFunction<List<Integer>, Comparator<Integer>, NavigableSet<Integer>>> SETS =
+            new LinkedHashMap<>();
+
+    static {
+        COMPARATORS.put("natural", null);
+        COMPARATORS.put("custom", (a, b) -> Integer.compare(a, b));
+        COMPARATORS.put("reversed", Comparator.reverseOrder());
+
+        SETS.put("ArraySet", ArraySet::new);
+        SETS.put("TreeSet", (elements, comparator) -> {
+            TreeSet<Integer> set = new TreeSet<>(comparator);
+            set.addAll(elements);
+            return set;
+        });
+        SETS.put("ConcurrentSkipListSet", (elements, comparator) -> {
+            ConcurrentSkipListSet<Integer> set = new ConcurrentSkipListSet<>(comparator);
+            set.addAll(elements);
+            return set;
+        });
+    }
+
+    /**
+     * Keeps results alive, so computations are not eliminated.
+     */
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        String section = args.length > 0 ? args[0] : "all";
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int repeats = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        if (section.equals("construction") || section.equals("all")) {
+            construction(size, repeats);
+        }
+        if (section.equals("search") || section.equals("all")) {
+            search(size, repeats);
+        }
+        if (section.equals("views") || section.equals("all")) {
+            views(size, repeats);
+        }
+        if (section.equals("operations") || section.equals("all")) {
+            operations(size, repeats);
+        }
+        if (section.equals("memory") || section.equals("all")) {
+            memory(size, repeats);
+        }
+        if (section.equals("keys") || section.equals("all")) {
+            keys(size, repeats);
+        }
+        if (section.equals("load") || section.equals("all")) {
+            load(size, repeats);
+        }
+    }
+
+    private static List<Integer> randomList(int size, Random random) {
+        List<Integer> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(random.nextInt());
+        }
+        return result;
+    }
+
+    private static void construction(int size, int repeats) {
+        Random random = new Random(0);
+        List<Integer> shuffled = randomList(size, random);
+        List<Integer> sorted = new ArrayList<>(shuffled);
+        Collections.sort(sorted);
+        TreeSet<Integer> sortedSet = new TreeSet<>(shuffled);
+
+        for (int i = 0; i < repeats; i++) {
+            System.out.println("Construction of " + size + " elements:");
+            measure("TreeSet path, shuffled", () -> treeSetPath(shuffled));
+            measure("ArraySet, shuffled", () -> new ArraySet<>(shuffled));
+            measure("TreeSet path, sorted", () -> treeSetPath(sorted));
+            measure("ArraySet, sorted", () -> new ArraySet<>(sorted));
+            measure("TreeSet path, SortedSet", () -> treeSetPath(sortedSet));
+            measure("ArraySet, SortedSet", () -> new ArraySet<>(sortedSet));
+        }
+    }
+
+    private static void search(int maxSize, int repeats) {
+        Random random = new Random(0);
+        for (int size = 1024; size <= maxSize; size *= 8) {
+            List<Integer> elements = randomList(size, random);
+            ArraySet<Integer> sorted = new ArraySet<>(elements, null, false);
+            NavigableSet<Integer> eytzinger = new ArraySet<>(elements, null, true);
+            Integer[] probes = randomList(PROBES, random).toArray(new Integer[PROBES]);
+            Integer[] sortedProbes = probes.clone();
+            Arrays.sort(sortedProbes);
+
+            for (int i = 0; i < repeats; i++) {
+                System.out.println("Floor in set of " + size + " elements:");
+                measurePerOperation("binary search", () -> floorAll(sorted, probes), PROBES);
+                measurePerOperation("Eytzinger layout", () -> floorAll(eytzinger, probes), PROBES);
+                measurePerOperation("sorted probes, floor", () -> floorAll(sorted, sortedProbes), PROBES);
+                measurePerOperation("sorted probes, floorEach", () -> sorted.floorEach(sortedProbes), PROBES);
+            }
+        }
+    }
+
+    private static void views(int size, int repeats) {
+        Random random = new Random(0);
+        List<Integer> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(i);
+        }
+        ArraySet<Integer> arraySet = new ArraySet<>(elements);
+        TreeSet<Integer> treeSet = new TreeSet<>(elements);
+        Integer[] probes = randomList(PROBES, random).toArray(new Integer[PROBES]);
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = Math.floorMod(probes[i], size);
+        }
+
+        for (int i = 0; i < repeats; i++) {
+            for (int depth = 1; depth <= MAX_VIEW_DEPTH; depth *= 4) {
+                int d = depth;
+                System.out.println("Floor in view of depth " + depth + " of " + size + " elements:");
+                NavigableSet<Integer> arrayView = nest(arraySet, depth);
+                NavigableSet<Integer> treeView = nest(treeSet, depth);
+                measurePerOperation("ArraySet, build view", () -> nest(arraySet, d), d);
+                measurePerOperation("ArraySet", () -> floorAll(arrayView, probes), PROBES);
+                measurePerOperation("TreeSet", () -> floorAll(treeView, probes), PROBES);
+            }
+        }
+    }
+
+    /**
+     * Returns chain of views of given depth: every level cuts one element from both ends and reverses order.
+     */
+    private static NavigableSet<Integer> nest(NavigableSet<Integer> set, int depth) {
+        for (int i = 0; i < depth; i++) {
+            set = set.subSet(set.first(), false, set.last(), false).descendingSet();
+        }
+        return set;
+    }
+
+    private static void operations(int maxSize, int repeats) {
+        Random random = new Random(0);
+        for (int size = MIN_SIZE; size <= maxSize; size *= SIZE_STEP) {
+            List<Integer> elements = randomList(size, random);
+            Integer[] probes = new Integer[PROBES];
+            for (int i = 0; i < PROBES; i++) {
+                probes[i] = random.nextBoolean() ? elements.get(random.nextInt(size)) : random.nextInt();
+            }
+            int passes = Math.max(1, PROBES / size);
+
+            for (int i = 0; i < repeats; i++) {
+                for (Map.Entry<String, Comparator<Integer>> comparator : COMPARATORS.entrySet()) {
+                    for (Map.Entry<String, BiFunction<List<Integer>, Comparator<Integer>, NavigableSet<Integer>>> factory
+                            : SETS.entrySet()) {
+                        NavigableSet<Integer> set = factory.getValue().apply(elements, comparator.getValue());
+                        System.out.println(factory.getKey() + " of " + size + " elements, "
+                                + comparator.getKey() + " order:");
+                        measurePerOperation("construction", () -> factory.getValue().apply(elements, comparator.getValue()), size);
+                        measurePerOperation("contains", () -> containsAll(set, probes), PROBES);
+                        measurePerOperation("floor", () -> floorAll(set, probes), PROBES);
+                        measurePerOperation("ceiling", () -> ceilingAll(set, probes), PROBES);
+                        measurePerOperation("iteration", () -> iterate(set::iterator, passes), passes * size);
+                        measurePerOperation("descending iteration", () -> iterate(set::descendingIterator, passes),
+                                passes * size);
+                        measurePerOperation("nested subSet", () -> rangeAll(set, probes), PROBES);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void memory(int maxSize, int repeats) {
+        Random random = new Random(0);
+        for (int size = MIN_SIZE; size <= maxSize; size *= SIZE_STEP) {
+            List<Integer> elements = randomList(size, random);
+            int copies = Math.max(1, MEMORY_ELEMENTS / size);
+            for (int i = 0; i < repeats; i++) {
+                System.out.println("Memory of " + size + " elements:");
+                for (Map.Entry<String, BiFunction<List<Integer>, Comparator<Integer>, NavigableSet<Integer>>> factory
+                        : SETS.entrySet()) {
+                    Object[] sets = new Object[copies];
+                    long before = usedMemory();
+                    for (int j = 0; j < copies; j++) {
+                        sets[j] = factory.getValue().apply(elements, null);
+                    }
+                    long after = usedMemory();
+                    sink = sets;
+                    sink = null;
+                    System.out.printf("  %-30s %8.1f bytes/element%n", factory.getKey(),
+                            (after - before) / (double) size / copies);
+                }
+            }
+        }
+    }
+
+    private static void keys(int size, int repeats) {
+        Random random = new Random(0);
+        List<String> strings = new ArrayList<>(size);
+        List<Long> longs = new ArrayList<>(size);
+        List<UUID> uuids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(Long.toString(random.nextLong() & Long.MAX_VALUE, 36));
+            longs.add(random.nextLong());
+            uuids.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        List<Integer> integers = randomList(size, random);
+
+        for (int i = 0; i < repeats; i++) {
+            System.out.println("Search of " + PROBES + " keys in sets of " + size + " elements:");
+            measureKeys("Integer", integers, null);
+            measureKeys("Long", longs, null);
+            measureKeys("UUID", uuids, null);
+            measureKeys("String", strings, ArraySets::stringPrefix);
+        }
+    }
+
+    private static <T extends Comparable<? super T>> void measureKeys(String name, List<T> elements,
+                                                                      ToLongFunction<? super T> prefix) {
+        Random random = new Random(1);
+        List<T> probes = new ArrayList<>(PROBES);
+        for (int i = 0; i < PROBES; i++) {
+            probes.add(elements.get(random.nextInt(elements.size())));
+        }
+        ArraySet<T> natural = new ArraySet<>(elements);
+        ArraySet<T> comparator = new ArraySet<>(elements, Comparator.naturalOrder());
+        measurePerOperation(name + ", natural order", () -> containsAll(natural, probes), PROBES);
+        measurePerOperation(name + ", comparator", () -> containsAll(comparator, probes), PROBES);
+        if (prefix != null) {
+            ArraySet<T> prefixed = new ArraySet<>(elements, null, prefix);
+            measurePerOperation(name + ", prefix", () -> containsAll(prefixed, probes), PROBES);
+        }
+    }
+
+    private static void load(int size, int repeats) {
+        Random random = new Random(0);
+        List<Integer> integers = randomList(size, random);
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add("user/" + (random.nextInt() & Integer.MAX_VALUE));
+        }
+        for (int i = 0; i < repeats; i++) {
+            System.out.println("Load of " + size + " elements:");
+            measureLoad("Integer", integers);
+            measureLoad("String", strings);
+        }
+    }
+
+    private static void measureLoad(String name, List<?> elements) {
+        ArraySet<?> set = new ArraySet<>(elements);
+        byte[] serialized;
+        byte[] encoded;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(out)) {
+                objects.writeObject(new ArrayList<>(set));
+            }
+            serialized = out.toByteArray();
+            out = new ByteArrayOutputStream();
+            ArraySetCodec.write(set, out);
+            encoded = out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        System.out.printf("  %-30s %8d bytes, %8d bytes%n", name + ", serialized/encoded", serialized.length, encoded.length);
+        measure(name + ", serialization", () -> {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+                return new ArraySet<>((List<?>) in.readObject());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        measure(name + ", ArraySetCodec", () -> {
+            try {
+                return ArraySetCodec.read(new ByteArrayInputStream(encoded));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static Object containsAll(Set<Integer> set, Integer[] probes) {
+        return containsAll(set, Arrays.asList(probes));
+    }
+
+    private static <T> Object containsAll(Set<T> set, List<T> probes) {
+        int count = 0;
+        for (T probe : probes) {
+            if (set.contains(probe)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Object ceilingAll(NavigableSet<Integer> set, Integer[] probes) {
+        long sum = 0;
+        for (Integer probe : probes) {
+            Integer ceiling = set.ceiling(probe);
+            sum += ceiling == null ? 0 : ceiling;
+        }
+        return sum;
+    }
+
+    private static Object iterate(Supplier<Iterator<Integer>> iterators, int passes) {
+        long sum = 0;
+        for (int i = 0; i < passes; i++) {
+            for (Iterator<Integer> iterator = iterators.get(); iterator.hasNext(); ) {
+                sum += iterator.next();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * For every probe takes a range view around it, a tail view of that range and its first element.
+     */
+    private static Object rangeAll(NavigableSet<Integer> set, Integer[] probes) {
+        Comparator<? super Integer> comparator = set.comparator();
+        long sum = 0;
+        for (Integer probe : probes) {
+            int low = probe - (1 << 20);
+            int high = probe + (1 << 20);
+            if (low > probe || high < probe) {
+                continue;
+            }
+            if (comparator != null && comparator.compare(low, high) > 0) {
+                int t = low;
+                low = high;
+                high = t;
+            }
+            NavigableSet<Integer> range = set.subSet(low, true, high, true).tailSet(probe, true);
+            sum += range.isEmpty() ? 0 : range.first();
+        }
+        return sum;
+    }
+
+    private static Object floorAll(NavigableSet<Integer> set, Integer[] probes) {
+        long sum = 0;
+        for (Integer probe : probes) {
+            Integer floor = set.floor(probe);
+            sum += floor == null ? 0 : floor;
+        }
+        return sum;
+    }
+
+    /**
+     * Construction of {@code ArraySet} before sort-and-dedup path, kept for comparison.
+     */
+    private static <T> List<T> treeSetPath(Collection<T> collection) {
+        Set<T> s = new TreeSet<>(collection);
+        List<T> data = new ArrayList<>();
+        data.addAll(s);
+        return data;
+    }
+
+    private static void measure(String name, Supplier<?> action) {
+        long start = System.nanoTime();
+        sink = action.get();
+        long time = System.nanoTime() - start;
+        System.out.printf("  %-30s %8.1f ms%n", name, time / 1e6);
+    }
+
+    private static void measurePerOperation(String name, Supplier<?> action, int operations) {
+        long start = System.nanoTime();
+        sink = action.get();
+        long time = System.nanoTime() - start;
+        System.out.printf("  %-30s %8.1f ns/op%n", name, time / (double) operations);
+    }
+}
@@ -0,0 +1,312 @@
+package ru.ifmo.ctddev.tolmachev.arrayset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary format of naturally ordered sets of {@code Integer}s, {@code Long}s or {@code String}s.
+ * <p>
+ * Format: magic, version, type of elements, count of elements, then elements in ascending order
+ * and CRC32 of all previous bytes.
+ * Numbers are stored as zigzag varint of the first value followed by unsigned varint differences
+ * of consecutive values. Strings are front coded: varint length of prefix shared with the previous string,
+ * varint length of the rest of string and its chars, one to three bytes each as in {@code DataOutput.writeUTF}.
+ * <p>
+ * Sets are read without sorting, but every element is checked to be in range of its type and greater
+ * than the previous one, so broken files are rejected instead of producing unordered sets.
+ * Elements are collected as they are decoded, so stored count of elements doesn't allocate memory by itself.
+ * <p>
+ * Methods which take streams neither buffer nor close them.
+ */
+public final class ArraySetCodec {
+    private static final int MAGIC = 0x41534554;
+    private static final int VERSION = 2;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte STRING = 3;
+    private static final int HEADER_SIZE = 10;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private ArraySetCodec() {
+    }
+
+    /**
+     * Writes naturally ordered set to file.
+     *
+     * @param set set of {@code Integer}s, {@code Long}s or {@code String}s.
+     * @param file file to write.
+     * @throws IOException if set can't be written.
+     * @throws IllegalArgumentException if set isn't naturally ordered or its elements have unsupported type.
+     */
+    public static void write(SortedSet<?> set, Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            write(set, out);
+        }
+    }
+
+    /**
+     * Writes naturally ordered set to stream.
+     *
+     * @param set set of {@code Integer}s, {@code Long}s or {@code String}s.
+     * @param stream stream to write.
+     * @throws IOException if set can't be written.
+     * @throws IllegalArgumentException if set isn't naturally ordered or its elements have unsupported type.
+     */
+    public static void write(SortedSet<?> set, OutputStream stream) throws IOException {
+        if (set.comparator() != null) {
+            throw new IllegalArgumentException("Only naturally ordered sets are supported");
+        }
+        byte type = type(set);
+        CheckedOutputStream checked = new CheckedOutputStream(stream, new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        out.writeInt(set.size());
+        if (type == STRING) {
+            String previous = "";
+            for (Object element : set) {
+                String s = (String) element;
+                int shared = sharedPrefix(previous, s);
+                writeVarLong(out, shared);
+                writeVarLong(out, s.length() - shared);
+                for (int i = shared; i < s.length(); i++) {
+                    writeChar(out, s.charAt(i));
+                }
+                previous = s;
+            }
+        } else {
+            boolean first = true;
+            long previous = 0;
+            for (Object element : set) {
+                long value = ((Number) element).longValue();
+                writeVarLong(out, first ? value << 1 ^ value >> 63 : value - previous);
+                first = false;
+                previous = value;
+            }
+        }
+        out.writeInt((int) checked.getChecksum().getValue());
+        out.flush();
+    }
+
+    private static byte type(SortedSet<?> set) {
+        if (set.isEmpty()) {
+            return INTEGER;
+        }
+        Class<?> type = set.first().getClass();
+        for (Object element : set) {
+            if (element.getClass() != type) {
+                throw new IllegalArgumentException("Elements have different types");
+            }
+        }
+        if (type == Integer.class) {
+            return INTEGER;
+        } else if (type == Long.class) {
+            return LONG;
+        } else if (type == String.class) {
+            return STRING;
+        }
+        throw new IllegalArgumentException("Unsupported type of elements: " + type.getName());
+    }
+
+    private static int sharedPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void writeChar(DataOutput out, char c) throws IOException {
+        if (c < 0x80) {
+            out.writeByte(c);
+        } else if (c < 0x800) {
+            out.writeByte(0xC0 | c >> 6);
+            out.writeByte(0x80 | c & 0x3F);
+        } else {
+            out.writeByte(0xE0 | c >> 12);
+            out.writeByte(0x80 | c >> 6 & 0x3F);
+            out.writeByte(0x80 | c & 0x3F);
+        }
+    }
+
+    private static char readChar(DataInput in) throws IOException {
+        int b = in.readUnsignedByte();
+        if (b < 0x80) {
+            return (char) b;
+        } else if (b < 0xE0) {
+            return (char) ((b & 0x1F) << 6 | in.readUnsignedByte() & 0x3F);
+        } else {
+            return (char) ((b & 0x0F) << 12 | (in.readUnsignedByte() & 0x3F) << 6 | in.readUnsignedByte() & 0x3F);
+        }
+    }
+
+    /**
+     * Reads set from file. Count of elements is checked against size of file before reading them.
+     *
+     * @param file file to read.
+     * @return set of elements of stored type.
+     * @throws IOException if file can't be read or has wrong format.
+     */
+    public static ArraySet<?> read(Path file) throws IOException {
+        long bytes = Files.size(file) - HEADER_SIZE - Integer.BYTES;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return read(in, bytes);
+        }
+    }
+
+    /**
+     * Reads set from stream. Stream is read exactly to the end of set.
+     *
+     * @param stream stream to read.
+     * @return set of elements of stored type.
+     * @throws IOException if stream can't be read or has wrong format.
+     */
+    public static ArraySet<?> read(InputStream stream) throws IOException {
+        return read(stream, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads set which elements take at most given count of bytes.
+     */
+    private static ArraySet<?> read(InputStream stream, long bytes) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(stream, new CRC32());
+        DataInputStream in = new DataInputStream(checked);
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Unknown format");
+        }
+        byte type = in.readByte();
+        int size = in.readInt();
+        // Every number takes at least one byte and every string at least two.
+        if (size < 0 || size > bytes / (type == STRING ? 2 : 1)) {
+            throw new IOException("Invalid element count: " + size);
+        }
+        ArrayList<Object> elements = new ArrayList<>(Math.min(size, INITIAL_CAPACITY));
+        switch (type) {
+            case INTEGER:
+                long previous = 0;
+                for (int i = 0; i < size; i++) {
+                    previous = next(in, i, previous, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                    elements.add((int) previous);
+                }
+                break;
+            case LONG:
+                long value = 0;
+                for (int i = 0; i < size; i++) {
+                    value = next(in, i, value, Long.MIN_VALUE, Long.MAX_VALUE);
+                    elements.add(value);
+                }
+                break;
+            case STRING:
+                char[] chars = new char[16];
+                int length = 0;
+                String last = null;
+                for (int i = 0; i < size; i++) {
+                    int shared = readLength(in, length);
+                    length = shared + readLength(in, Integer.MAX_VALUE - shared);
+                    if (length > chars.length) {
+                        chars = Arrays.copyOf(chars, Math.max(length, 2 * chars.length));
+                    }
+                    for (int j = shared; j < length; j++) {
+                        chars[j] = readChar(in);
+                    }
+                    String string = new String(chars, 0, length);
+                    if (last != null && last.compareTo(string) >= 0) {
+                        throw new IOException("Strings are not in ascending order");
+                    }
+                    elements.add(string);
+                    last = string;
+                }
+                break;
+            default:
+                throw new IOException("Unknown type of elements: " + type);
+        }
+        int crc = (int) checked.getChecksum().getValue();
+        if (in.readInt() != crc) {
+            throw new IOException("Checksum mismatch");
+        }
+        elements.trimToSize();
+        return ArraySet.ofSortedNatural(elements);
+    }
+
+    /**
+     * Reads set of elements of given type from stream.
+     *
+     * @param stream stream to read.
+     * @param type expected type of elements.
+     * @param <T> type of elements.
+     * @return set of elements.
+     * @throws IOException if stream can't be read, has wrong format or contains elements of another type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ArraySet<T> read(InputStream stream, Class<T> type) throws IOException {
+        ArraySet<?> set = read(stream);
+        if (!set.isEmpty() && set.first().getClass() != type) {
+            throw new IOException("Set contains elements of type " + set.first().getClass().getName());
+        }
+        return (ArraySet<T>) set;
+    }
+
+    /**
+     * Reads the next number, which should be in given range and greater than the previous one.
+     */
+    private static long next(DataInput in, int i, long previous, long min, long max) throws IOException {
+        long encoded = readVarLong(in);
+        if (i == 0) {
+            long value = encoded >>> 1 ^ -(encoded & 1);
+            if (value < min || value > max) {
+                throw new IOException("Value out of range: " + value);
+            }
+            return value;
+        }
+        // Difference is unsigned, so it may exceed Long.MAX_VALUE for sets of longs.
+        if (encoded == 0 || Long.compareUnsigned(encoded, max - previous) > 0) {
+            throw new IOException("Values are not in ascending order or out of range");
+        }
+        return previous + encoded;
+    }
+
+    private static int readLength(DataInput in, int max) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > max) {
+            throw new IOException("Invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
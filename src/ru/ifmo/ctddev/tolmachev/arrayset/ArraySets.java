@@ -0,0 +1,283 @@
+package ru.ifmo.ctddev.tolmachev.arrayset;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bulk operations on {@code ArraySet}s which are ordered by the same comparator.
+ * <p>
+ * Since both sets are sorted, operations are linear merges instead of a lookup per element.
+ * If one set is much smaller than another, every element of the smaller set is searched in the
+ * larger one by galloping (exponential) search from the previous position, so operation takes
+ * O(m log(n / m)) comparisons. Of equal elements, element of the first set is kept.
+ */
+public final class ArraySets {
+    /**
+     * Sets are merged by galloping if one of them is that many times larger.
+     */
+    static final int GALLOP_RATIO = 8;
+
+    private ArraySets() {
+    }
+
+    /**
+     * Returns set of elements which are contained in any of given sets.
+     *
+     * @param a first set.
+     * @param b second set.
+     * @param <T> type of elements.
+     * @return union of sets.
+     * @throws IllegalArgumentException if sets have different comparators.
+     */
+    public static <T> ArraySet<T> union(ArraySet<T> a, ArraySet<T> b) {
+        Comparator<? super T> comparator = checkComparators(a, b);
+        int n = a.size();
+        int m = b.size();
+        List<T> result = new ArrayList<>(n + m);
+
+        if (isUneven(n, m)) {
+            boolean aSmaller = n < m;
+            ArraySet<T> small = aSmaller ? a : b;
+            ArraySet<T> large = aSmaller ? b : a;
+            int j = 0;
+            for (int i = 0; i < small.size(); i++) {
+                T element = small.get(i);
+                int k = gallop(large, j, element, comparator);
+                copy(large, j, k, result);
+                if (k < large.size() && ArraySet.compare(large.get(k), element, comparator) == 0) {
+                    result.add(aSmaller ? element : large.get(k));
+                    k++;
+                } else {
+                    result.add(element);
+                }
+                j = k;
+            }
+            copy(large, j, large.size(), result);
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < n && j < m) {
+                int c = ArraySet.compare(a.get(i), b.get(j), comparator);
+                if (c < 0) {
+                    result.add(a.get(i++));
+                } else if (c > 0) {
+                    result.add(b.get(j++));
+                } else {
+                    result.add(a.get(i++));
+                    j++;
+                }
+            }
+            copy(a, i, n, result);
+            copy(b, j, m, result);
+        }
+        return ArraySet.ofSortedList(result, comparator);
+    }
+
+    /**
+     * Returns set of elements which are contained in both given sets.
+     *
+     * @param a first set.
+     * @param b second set.
+     * @param <T> type of elements.
+     * @return intersection of sets.
+     * @throws IllegalArgumentException if sets have different comparators.
+     */
+    public static <T> ArraySet<T> intersection(ArraySet<T> a, ArraySet<T> b) {
+        Comparator<? super T> comparator = checkComparators(a, b);
+        int n = a.size();
+        int m = b.size();
+        List<T> result = new ArrayList<>(Math.min(n, m));
+
+        if (isUneven(n, m)) {
+            boolean aSmaller = n < m;
+            ArraySet<T> small = aSmaller ? a : b;
+            ArraySet<T> large = aSmaller ? b : a;
+            int j = 0;
+            for (int i = 0; i < small.size() && j < large.size(); i++) {
+                T element = small.get(i);
+                j = gallop(large, j, element, comparator);
+                if (j < large.size() && ArraySet.compare(large.get(j), element, comparator) == 0) {
+                    result.add(aSmaller ? element : large.get(j));
+                    j++;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < n && j < m) {
+                int c = ArraySet.compare(a.get(i), b.get(j), comparator);
+                if (c < 0) {
+                    i++;
+                } else if (c > 0) {
+                    j++;
+                } else {
+                    result.add(a.get(i++));
+                    j++;
+                }
+            }
+        }
+        return ArraySet.ofSortedList(result, comparator);
+    }
+
+    /**
+     * Returns set of elements of the first set which are not contained in the second one.
+     *
+     * @param a first set.
+     * @param b second set.
+     * @param <T> type of elements.
+     * @return difference of sets.
+     * @throws IllegalArgumentException if sets have different comparators.
+     */
+    public static <T> ArraySet<T> difference(ArraySet<T> a, ArraySet<T> b) {
+        Comparator<? super T> comparator = checkComparators(a, b);
+        int n = a.size();
+        int m = b.size();
+        List<T> result = new ArrayList<>(n);
+
+        if (isUneven(n, m) && n < m) {
+            int j = 0;
+            for (int i = 0; i < n; i++) {
+                T element = a.get(i);
+                j = gallop(b, j, element, comparator);
+                if (j == m || ArraySet.compare(b.get(j), element, comparator) != 0) {
+                    result.add(element);
+                }
+            }
+        } else if (isUneven(n, m)) {
+            int i = 0;
+            for (int j = 0; j < m && i < n; j++) {
+                int k = gallop(a, i, b.get(j), comparator);
+                copy(a, i, k, result);
+                if (k < n && ArraySet.compare(a.get(k), b.get(j), comparator) == 0) {
+                    k++;
+                }
+                i = k;
+            }
+            copy(a, i, n, result);
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < n && j < m) {
+                int c = ArraySet.compare(a.get(i), b.get(j), comparator);
+                if (c < 0) {
+                    result.add(a.get(i++));
+                } else if (c > 0) {
+                    j++;
+                } else {
+                    i++;
+                    j++;
+                }
+            }
+            copy(a, i, n, result);
+        }
+        return ArraySet.ofSortedList(result, comparator);
+    }
+
+    /**
+     * Checks if the first set contains all elements of the second one.
+     *
+     * @param a first set.
+     * @param b second set.
+     * @param <T> type of elements.
+     * @return true if {@code b} is a subset of {@code a}; false otherwise.
+     * @throws IllegalArgumentException if sets have different comparators.
+     */
+    public static <T> boolean containsAll(ArraySet<T> a, ArraySet<T> b) {
+        Comparator<? super T> comparator = checkComparators(a, b);
+        int n = a.size();
+        int m = b.size();
+        if (m > n) {
+            return false;
+        }
+
+        int i = 0;
+        for (int j = 0; j < m; j++) {
+            T element = b.get(j);
+            if (isUneven(n, m)) {
+                i = gallop(a, i, element, comparator);
+            } else {
+                while (i < n && ArraySet.compare(a.get(i), element, comparator) < 0) {
+                    i++;
+                }
+            }
+            if (i == n || ArraySet.compare(a.get(i), element, comparator) != 0) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    /**
+     * Returns index of the first element of set in {@code [from, size)} which is not less than key
+     * or size of set if there is no such element.
+     * <p>
+     * Distance from {@code from} to the result is found by doubling steps and then by binary search,
+     * so search takes O(log d) comparisons where d is that distance.
+     */
+    static <T> int gallop(ArraySet<T> set, int from, T key, Comparator<? super T> comparator) {
+        int size = set.size();
+        if (from >= size || ArraySet.compare(set.get(from), key, comparator) >= 0) {
+            return from;
+        }
+
+        int low = from;
+        int step = 1;
+        int high = from + step;
+        while (high < size && ArraySet.compare(set.get(high), key, comparator) < 0) {
+            low = high;
+            step <<= 1;
+            high = size - low > step ? low + step : size;
+        }
+        return lowerBound(set, low + 1, Math.min(high, size), key, comparator);
+    }
+
+    /**
+     * Returns index of the first element in {@code [low, high)} which is not less than key or {@code high}.
+     */
+    static <T> int lowerBound(ArraySet<T> set, int low, int high, T key, Comparator<? super T> comparator) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ArraySet.compare(set.get(middle), key, comparator) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isUneven(int n, int m) {
+        return Math.min(n, m) * (long) GALLOP_RATIO < Math.max(n, m);
+    }
+
+    private static <T> void copy(ArraySet<T> set, int from, int to, List<T> result) {
+        for (int i = from; i < to; i++) {
+            result.add(set.get(i));
+        }
+    }
+
+    private static <T> Comparator<? super T> checkComparators(ArraySet<T> a, ArraySet<T> b) {
+        if (!Objects.equals(a.comparator(), b.comparator())) {
+            throw new IllegalArgumentException("Sets are ordered by different comparators");
+        }
+        return a.comparator();
+    }
+
+    /**
+     * Returns prefix of string for {@link ArraySet#ArraySet(java.util.Collection, Comparator, java.util.function.ToLongFunction)}
+     * which agrees with natural order of strings: first four chars are packed into 64 bits, missing chars are zeros.
+     *
+     * @param s string.
+     * @return prefix of string.
+     */
+    public static long stringPrefix(String s) {
+        long prefix = 0;
+        for (int i = 0; i < 4; i++) {
+            prefix = prefix << 16 | (i < s.length() ? s.charAt(i) : 0);
+        }
+        return prefix ^ Long.MIN_VALUE;
+    }
+}
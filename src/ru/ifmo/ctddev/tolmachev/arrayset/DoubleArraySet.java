@@ -0,0 +1,165 @@
+package ru.ifmo.ctddev.tolmachev.arrayset;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sorted set of {@code double} values backed by a {@code double} array.
+ * <p>
+ * Values are never boxed: lookups use {@code Arrays.binarySearch} on the array and
+ * navigation methods take and return primitive values. Methods {@code floor}, {@code ceiling},
+ * {@code lower} and {@code higher} throw {@code NoSuchElementException} if there is no such value,
+ * methods with {@code Index} suffix return {@code -1} instead.
+ * <p>
+ * {@link #asNavigableSet()} gives {@code NavigableSet} view which boxes values only when they are accessed.
+ * <p>
+ * Values are ordered as by {@code Double.compare}: {@code -0.0} is less than {@code 0.0}
+ * and {@code NaN} is greater than any other value and equal to itself.
+ */
+public class DoubleArraySet {
+    private final double[] data;
+
+    /**
+     * Constructs set of given values. Values are copied, sorted and deduplicated.
+     *
+     * @param values values of set.
+     */
+    public DoubleArraySet(double... values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || Double.compare(sorted[i], sorted[size - 1]) != 0) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        data = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    private int search(double value) {
+        return Arrays.binarySearch(data, value);
+    }
+
+    public int lowerIndex(double value) {
+        int i = search(value);
+        if (i < 0) {
+            i = -(i + 1);
+        }
+        return i - 1;
+    }
+
+    public int floorIndex(double value) {
+        int i = search(value);
+        if (i < 0) {
+            i = -(i + 1) - 1;
+        }
+        return i;
+    }
+
+    public int ceilingIndex(double value) {
+        int i = search(value);
+        if (i < 0) {
+            i = -(i + 1);
+        }
+        return i == data.length ? -1 : i;
+    }
+
+    public int higherIndex(double value) {
+        int i = search(value);
+        if (i < 0) {
+            i = -(i + 1);
+        } else {
+            ++i;
+        }
+        return i == data.length ? -1 : i;
+    }
+
+    public double lower(double value) {
+        return valueAt(lowerIndex(value));
+    }
+
+    public double floor(double value) {
+        return valueAt(floorIndex(value));
+    }
+
+    public double ceiling(double value) {
+        return valueAt(ceilingIndex(value));
+    }
+
+    public double higher(double value) {
+        return valueAt(higherIndex(value));
+    }
+
+    private double valueAt(int index) {
+        if (index == -1) {
+            throw new NoSuchElementException();
+        }
+        return data[index];
+    }
+
+    public boolean contains(double value) {
+        return search(value) >= 0;
+    }
+
+    /**
+     * Returns value with given index in ascending order.
+     *
+     * @param index index of value.
+     * @return value with given index.
+     */
+    public double get(int index) {
+        return data[index];
+    }
+
+    public int size() {
+        return data.length;
+    }
+
+    public boolean isEmpty() {
+        return data.length == 0;
+    }
+
+    public double first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return data[0];
+    }
+
+    public double last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return data[data.length - 1];
+    }
+
+    /**
+     * Returns copy of values in ascending order.
+     *
+     * @return sorted array of values.
+     */
+    public double[] toArray() {
+        return data.clone();
+    }
+
+    /**
+     * Returns unmodifiable {@code NavigableSet} view of this set in natural order.
+     *
+     * @return {@code NavigableSet} view.
+     */
+    public NavigableSet<Double> asNavigableSet() {
+        return ArraySet.ofSorted(new AbstractList<Double>() {
+            @Override
+            public Double get(int index) {
+                return data[index];
+            }
+
+            @Override
+            public int size() {
+                return data.length;
+            }
+        }, null);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.ifmo.ctddev.tolmachev.arrayset;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-optimized search index over a sorted list in Eytzinger (breadth-first) order.
+ * <p>
+ * Element {@code k} of the tree has children {@code 2k} and {@code 2k + 1}, so the first levels
+ * of every search share a few cache lines and the next probe position is computed from the result
+ * of comparison without a branch. Sorted position of every tree element is kept in {@code rank}.
+ */
+class EytzingerIndex<T> {
+    /**
+     * Maximal size of indexed list: tree positions of larger lists, which are up to twice the size, overflow {@code int}.
+     */
+    static final int MAX_SIZE = 1 << 30;
+
+    private final Object[] tree;
+    private final int[] rank;
+    private final Comparator<? super T> comparator;
+    private final int size;
+
+    EytzingerIndex(List<T> sorted, Comparator<? super T> comparator) {
+        if (sorted.size() > MAX_SIZE) {
+            throw new IllegalArgumentException("List is too large for index: " + sorted.size());
+        }
+        this.size = sorted.size();
+        this.tree = new Object[size + 1];
+        this.rank = new int[size + 1];
+        this.comparator = comparator;
+        fill(sorted, 0, 1);
+    }
+
+    private int fill(List<T> sorted, int i, int k) {
+        if (k <= size) {
+            i = fill(sorted, i, 2 * k);
+            tree[k] = sorted.get(i);
+            rank[k] = i++;
+            i = fill(sorted, i, 2 * k + 1);
+        }
+        return i;
+    }
+
+    /**
+     * Returns sorted index of the first element which is not less than given key
+     * or size of list if there is no such element.
+     */
+    int lowerBound(T key) {
+        int k = 1;
+        while (k <= size) {
+            k = 2 * k + (compare(k, key) < 0 ? 1 : 0);
+        }
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? size : rank[k];
+    }
+
+    /**
+     * Returns sorted index of the first element which is greater than given key
+     * or size of list if there is no such element.
+     */
+    int upperBound(T key) {
+        int k = 1;
+        while (k <= size) {
+            k = 2 * k + (compare(k, key) <= 0 ? 1 : 0);
+        }
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? size : rank[k];
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(int k, T key) {
+        return ArraySet.compare((T) tree[k], key, comparator);
+    }
+}
@@ -0,0 +1,162 @@
+package ru.ifmo.ctddev.tolmachev.arrayset;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sorted set of {@code long} values backed by a {@code long} array.
+ * <p>
+ * Values are never boxed: lookups use {@code Arrays.binarySearch} on the array and
+ * navigation methods take and return primitive values. Methods {@code floor}, {@code ceiling},
+ * {@code lower} and {@code higher} throw {@code NoSuchElementException} if there is no such value,
+ * methods with {@code Index} suffix return {@code -1} instead.
+ * <p>
+ * {@link #asNavigableSet()} gives {@code NavigableSet} view which boxes values only when they are accessed.
+ */
+public class LongArraySet {
+    private final long[] data;
+
+    /**
+     * Constructs set of given values. Values are copied, sorted and deduplicated.
+     *
+     * @param values values of set.
+     */
+    public LongArraySet(long... values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        data = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    private int search(long value) {
+        return Arrays.binarySearch(data, value);
+    }
+
+    public int lowerIndex(long value) {
+        int i = search(value);
+        if (i < 0) {
+            i = -(i + 1);
+        }
+        return i - 1;
+    }
+
+    public int floorIndex(long value) {
+        int i = search(value);
+        if (i < 0) {
+            i = -(i + 1) - 1;
+        }
+        return i;
+    }
+
+    public int ceilingIndex(long value) {
+        int i = search(value);
+        if (i < 0) {
+            i = -(i + 1);
+        }
+        return i == data.length ? -1 : i;
+    }
+
+    public int higherIndex(long value) {
+        int i = search(value);
+        if (i < 0) {
+            i = -(i + 1);
+        } else {
+            ++i;
+        }
+        return i == data.length ? -1 : i;
+    }
+
+    public long lower(long value) {
+        return valueAt(lowerIndex(value));
+    }
+
+    public long floor(long value) {
+        return valueAt(floorIndex(value));
+    }
+
+    public long ceiling(long value) {
+        return valueAt(ceilingIndex(value));
+    }
+
+    public long higher(long value) {
+        return valueAt(higherIndex(value));
+    }
+
+    private long valueAt(int index) {
+        if (index == -1) {
+            throw new NoSuchElementException();
+        }
+        return data[index];
+    }
+
+    public boolean contains(long value) {
+        return search(value) >= 0;
+    }
+
+    /**
+     * Returns value with given index in ascending order.
+     *
+     * @param index index of value.
+     * @return value with given index.
+     */
+    public long get(int index) {
+        return data[index];
+    }
+
+    public int size() {
+        return data.length;
+    }
+
+    public boolean isEmpty() {
+        return data.length == 0;
+    }
+
+    public long first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return data[0];
+    }
+
+    public long last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return data[data.length - 1];
+    }
+
+    /**
+     * Returns copy of values in ascending order.
+     *
+     * @return sorted array of values.
+     */
+    public long[] toArray() {
+        return data.clone();
+    }
+
+    /**
+     * Returns unmodifiable {@code NavigableSet} view of this set in natural order.
+     *
+     * @return {@code NavigableSet} view.
+     */
+    public NavigableSet<Long> asNavigableSet() {
+        return ArraySet.ofSorted(new AbstractList<Long>() {
+            @Override
+            public Long get(int index) {
+                return data[index];
+            }
+
+            @Override
+            public int size() {
+                return data.length;
+            }
+        }, null);
+    }
+}
@@ -0,0 +1,402 @@
+package ru.ifmo.ctddev.tolmachev.arrayset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable sorted set of {@code long} values stored in a memory-mapped file.
+ * <p>
+ * File consists of 16-byte header (magic, version, count of values) and sorted distinct values,
+ * so set is opened by mapping the file: values are neither read nor deserialized and stay out of the heap.
+ * Files are written by {@link Builder}, which sorts any count of values in runs of bounded size
+ * and merges them. Set may contain up to {@code Integer.MAX_VALUE} values (16 GB).
+ * <p>
+ * Navigation methods behave like ones of {@code LongArraySet}.
+ */
+public class MappedLongArraySet {
+    private static final int MAGIC = 0x4C534554;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    /**
+     * Values are mapped by segments of 2^27 values (1 GB), since one mapping can't exceed 2 GB.
+     */
+    private static final int SEGMENT_SHIFT = 27;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final LongBuffer[] segments;
+    private final int size;
+
+    private MappedLongArraySet(LongBuffer[] segments, int size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Maps set written by {@link Builder}. Mapping stays valid after the file is closed.
+     *
+     * @param file file of set.
+     * @return mapped set.
+     * @throws IOException if file can't be mapped or has wrong format.
+     */
+    public static MappedLongArraySet open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Unknown format");
+            }
+            long count = header.getLong();
+            if (count < 0 || count > Integer.MAX_VALUE || channel.size() != HEADER_SIZE + count * Long.BYTES) {
+                throw new IOException("File is truncated or corrupted");
+            }
+
+            LongBuffer[] segments = new LongBuffer[(int) ((count + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i << SEGMENT_SHIFT;
+                long length = Math.min(count - first, 1L << SEGMENT_SHIFT);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * Long.BYTES,
+                        length * Long.BYTES).asLongBuffer();
+            }
+            return new MappedLongArraySet(segments, (int) count);
+        }
+    }
+
+    /**
+     * Returns index of the first value which is not less than given one or size of set.
+     */
+    private int lowerBound(long value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (get(middle) < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns index of the first value which is greater than given one or size of set.
+     */
+    private int upperBound(long value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (get(middle) <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public int lowerIndex(long value) {
+        return lowerBound(value) - 1;
+    }
+
+    public int floorIndex(long value) {
+        return upperBound(value) - 1;
+    }
+
+    public int ceilingIndex(long value) {
+        int i = lowerBound(value);
+        return i == size ? -1 : i;
+    }
+
+    public int higherIndex(long value) {
+        int i = upperBound(value);
+        return i == size ? -1 : i;
+    }
+
+    public long lower(long value) {
+        return valueAt(lowerIndex(value));
+    }
+
+    public long floor(long value) {
+        return valueAt(floorIndex(value));
+    }
+
+    public long ceiling(long value) {
+        return valueAt(ceilingIndex(value));
+    }
+
+    public long higher(long value) {
+        return valueAt(higherIndex(value));
+    }
+
+    private long valueAt(int index) {
+        if (index == -1) {
+            throw new NoSuchElementException();
+        }
+        return get(index);
+    }
+
+    public boolean contains(long value) {
+        int i = lowerBound(value);
+        return i < size && get(i) == value;
+    }
+
+    /**
+     * Returns value with given index in ascending order.
+     *
+     * @param index index of value.
+     * @return value with given index.
+     */
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long first() {
+        return valueAt(isEmpty() ? -1 : 0);
+    }
+
+    public long last() {
+        return valueAt(size - 1);
+    }
+
+    /**
+     * Returns unmodifiable {@code NavigableSet} view of this set in natural order.
+     *
+     * @return {@code NavigableSet} view.
+     */
+    public NavigableSet<Long> asNavigableSet() {
+        return ArraySet.ofSorted(new AbstractList<Long>() {
+            @Override
+            public Long get(int index) {
+                return MappedLongArraySet.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        }, null);
+    }
+
+    /**
+     * Writes set of values to file by external sort.
+     * <p>
+     * Values are collected into a buffer of given size; every full buffer is sorted, deduplicated
+     * and spilled into a temporary run next to the target file. {@link #build()} merges all runs
+     * into the target file, which is replaced atomically.
+     */
+    public static class Builder implements Closeable {
+        private static final int DEFAULT_RUN_SIZE = 1 << 24;
+
+        private final Path file;
+        private final long[] buffer;
+        private int count;
+        private final List<Path> runs = new ArrayList<>();
+
+        public Builder(Path file) {
+            this(file, DEFAULT_RUN_SIZE);
+        }
+
+        /**
+         * Constructs builder of set in given file.
+         *
+         * @param file target file.
+         * @param runSize count of values sorted in memory at once.
+         */
+        public Builder(Path file, int runSize) {
+            if (runSize <= 0) {
+                throw new IllegalArgumentException("Run size should be positive");
+            }
+            this.file = file.toAbsolutePath();
+            this.buffer = new long[runSize];
+        }
+
+        public Builder add(long value) throws IOException {
+            if (count == buffer.length) {
+                spill();
+            }
+            buffer[count++] = value;
+            return this;
+        }
+
+        public Builder addAll(long... values) throws IOException {
+            for (long value : values) {
+                add(value);
+            }
+            return this;
+        }
+
+        /**
+         * Sorts and deduplicates buffer.
+         *
+         * @return count of unique values.
+         */
+        private int sortBuffer() {
+            Arrays.sort(buffer, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || buffer[i] != buffer[unique - 1]) {
+                    buffer[unique++] = buffer[i];
+                }
+            }
+            count = 0;
+            return unique;
+        }
+
+        private void spill() throws IOException {
+            int unique = sortBuffer();
+            Path run = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".run");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+                for (int i = 0; i < unique; i++) {
+                    out.writeLong(buffer[i]);
+                }
+            }
+        }
+
+        /**
+         * Writes all added values to target file, deletes temporary runs and maps the result.
+         *
+         * @return mapped set.
+         * @throws IOException if set can't be written.
+         */
+        public MappedLongArraySet build() throws IOException {
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeLong(0);
+                    long written = runs.isEmpty() ? writeBuffer(out) : merge(out);
+                    if (written > Integer.MAX_VALUE) {
+                        throw new IOException("Too many values: " + written);
+                    }
+                    out.flush();
+                    ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+                    header.putLong(0, written);
+                    stream.getChannel().write(header, HEADER_SIZE - Long.BYTES);
+                    stream.getFD().sync();
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+                close();
+            }
+            return open(file);
+        }
+
+        private long writeBuffer(DataOutputStream out) throws IOException {
+            int unique = sortBuffer();
+            for (int i = 0; i < unique; i++) {
+                out.writeLong(buffer[i]);
+            }
+            return unique;
+        }
+
+        private long merge(DataOutputStream out) throws IOException {
+            if (count > 0) {
+                spill();
+            }
+            List<Run> opened = new ArrayList<>();
+            try {
+                PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(), Comparator.comparingLong(run -> run.head));
+                for (Path path : runs) {
+                    Run run = new Run(path);
+                    opened.add(run);
+                    if (run.advance()) {
+                        queue.add(run);
+                    }
+                }
+
+                long written = 0;
+                long last = 0;
+                while (!queue.isEmpty()) {
+                    Run run = queue.poll();
+                    if (written == 0 || run.head != last) {
+                        last = run.head;
+                        out.writeLong(last);
+                        written++;
+                    }
+                    if (run.advance()) {
+                        queue.add(run);
+                    }
+                }
+                return written;
+            } finally {
+                for (Run run : opened) {
+                    run.in.close();
+                }
+            }
+        }
+
+        /**
+         * Deletes temporary runs. Values which were not built are lost.
+         */
+        @Override
+        public void close() throws IOException {
+            count = 0;
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Sorted run of values which is read sequentially during merge.
+     */
+    private static class Run {
+        private final DataInputStream in;
+        private long remaining;
+        private long head;
+
+        private Run(Path path) throws IOException {
+            this.remaining = Files.size(path) / Long.BYTES;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        }
+
+        private boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            head = in.readLong();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,750 @@
+package ru.ifmo.ctddev.tolmachev.arrayset;
+
+import java.util.*;
+
+/**
+ * Mutable sorted set which keeps most of its elements in an immutable {@code ArraySet}
+ * and recent changes in two buffers: tree of elements inserted into set and bit set of positions
+ * of elements deleted from the array.
+ * <p>
+ * Lookups check the array and both buffers. Runs of deleted positions are skipped by words of bit set,
+ * and positions of the first and the last elements which are not deleted are cached, so repeated
+ * {@code pollFirst} and {@code pollLast} don't scan deleted runs again. When buffers together grow above
+ * the threshold, they are merged into a new array in one linear pass. Deleted runs at both ends are counted
+ * in buffers too, so they never grow above the threshold. By default the threshold is n / log(n),
+ * so both insertions and deletions take amortized O(log n) time.
+ * <p>
+ * Iterators merge the array with buffers on the fly, so they never cause merges. Views are live ranges
+ * of this set: changes of the set are visible through them and changes made through them change the set.
+ * Iterators are fail-fast, as {@code TreeSet} ones.
+ * <p>
+ * Set doesn't permit {@code null} elements, even if comparator does: they throw {@code NullPointerException}
+ * from constructors and {@code add}, since {@code null} stands for absent element inside.
+ */
+public class MutableArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int MIN_MERGE_THRESHOLD = 16;
+
+    private final Comparator<? super T> comparator;
+    private final int mergeThreshold;
+    private ArraySet<T> main;
+    private final TreeSet<T> inserted;
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    /**
+     * Elements of the array before {@code head} and from {@code tail} are deleted.
+     */
+    private int head;
+    private int tail;
+    /**
+     * Counts of modifications and of merges, by which iterators fail fast and find their place after merges.
+     */
+    private int modCount;
+    private int merges;
+
+    public MutableArraySet() {
+        this(Collections.emptyList(), null);
+    }
+
+    public MutableArraySet(Collection<T> collection) {
+        this(collection, null);
+    }
+
+    public MutableArraySet(Collection<T> collection, Comparator<? super T> comparator) {
+        this(collection, comparator, 0);
+    }
+
+    /**
+     * Constructs set of elements of given collection with given size of buffers.
+     *
+     * @param collection elements of set.
+     * @param comparator comparator of elements or {@code null} for natural ordering.
+     * @param mergeThreshold count of buffered changes which causes merge or zero for n / log(n).
+     */
+    public MutableArraySet(Collection<T> collection, Comparator<? super T> comparator, int mergeThreshold) {
+        for (T t : collection) {
+            Objects.requireNonNull(t, "Set doesn't permit null elements");
+        }
+        this.comparator = comparator;
+        this.mergeThreshold = mergeThreshold;
+        this.main = new ArraySet<>(collection, comparator);
+        this.inserted = new TreeSet<>(comparator);
+        this.tail = main.size();
+    }
+
+    private int threshold() {
+        if (mergeThreshold > 0) {
+            return mergeThreshold;
+        }
+        int n = main.size();
+        return Math.max(MIN_MERGE_THRESHOLD, n / (32 - Integer.numberOfLeadingZeros(n | 1)));
+    }
+
+    private void changed() {
+        if (inserted.size() + deletedCount > threshold()) {
+            merge();
+        }
+    }
+
+    /**
+     * Merges buffers into the array.
+     */
+    public void merge() {
+        if (inserted.isEmpty() && deletedCount == 0) {
+            return;
+        }
+
+        List<T> result = new ArrayList<>(size());
+        Iterator<T> insertedIterator = inserted.iterator();
+        T nextInserted = next(insertedIterator);
+        for (int i = liveFrom(0); i < main.size(); i = liveFrom(i + 1)) {
+            T element = main.get(i);
+            while (nextInserted != null && ArraySet.compare(nextInserted, element, comparator) < 0) {
+                result.add(nextInserted);
+                nextInserted = next(insertedIterator);
+            }
+            result.add(element);
+        }
+        while (nextInserted != null) {
+            result.add(nextInserted);
+            nextInserted = next(insertedIterator);
+        }
+
+        main = ArraySet.ofSortedList(result, comparator);
+        inserted.clear();
+        deleted.clear();
+        deletedCount = 0;
+        head = 0;
+        tail = main.size();
+        merges++;
+    }
+
+    private static <T> T next(Iterator<T> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Returns position of element in the array, deleted or not, or -1 if array doesn't contain it.
+     */
+    @SuppressWarnings("unchecked")
+    private int position(Object o) {
+        T t = (T) o;
+        int i = main.ceilingIndex(t);
+        return i < main.size() && ArraySet.compare(main.get(i), t, comparator) == 0 ? i : -1;
+    }
+
+    /**
+     * Returns the first position from given one which is not deleted, or size of the array.
+     */
+    private int liveFrom(int position) {
+        if (position <= head) {
+            head = Math.min(deleted.nextClearBit(head), main.size());
+            return head;
+        }
+        return Math.min(deleted.nextClearBit(position), main.size());
+    }
+
+    /**
+     * Returns the last position before given one which is not deleted, or -1.
+     */
+    private int liveBefore(int position) {
+        if (position >= tail) {
+            tail = deleted.previousClearBit(tail - 1) + 1;
+            return tail - 1;
+        }
+        return deleted.previousClearBit(position - 1);
+    }
+
+    private T elementAt(int position) {
+        return position < 0 || position >= main.size() ? null : main.get(position);
+    }
+
+    @Override
+    public boolean add(T t) {
+        Objects.requireNonNull(t, "Set doesn't permit null elements");
+        int position = position(t);
+        if (position >= 0) {
+            if (!deleted.get(position)) {
+                return false;
+            }
+            deleted.clear(position);
+            deletedCount--;
+            modCount++;
+            head = Math.min(head, position);
+            tail = Math.max(tail, position + 1);
+            return true;
+        }
+        if (inserted.add(t)) {
+            modCount++;
+            changed();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (inserted.remove(o)) {
+            modCount++;
+            return true;
+        }
+        int position = position(o);
+        if (position >= 0 && !deleted.get(position)) {
+            deleted.set(position);
+            deletedCount++;
+            modCount++;
+            changed();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (inserted.contains(o)) {
+            return true;
+        }
+        int position = position(o);
+        return position >= 0 && !deleted.get(position);
+    }
+
+    @Override
+    public int size() {
+        return main.size() - deletedCount + inserted.size();
+    }
+
+    @Override
+    public void clear() {
+        main = ArraySet.ofSortedList(Collections.emptyList(), comparator);
+        inserted.clear();
+        deleted.clear();
+        deletedCount = 0;
+        head = 0;
+        tail = 0;
+        modCount++;
+        merges++;
+    }
+
+    private T min(T a, T b) {
+        return a == null ? b : b == null ? a : ArraySet.compare(a, b, comparator) <= 0 ? a : b;
+    }
+
+    private T max(T a, T b) {
+        return a == null ? b : b == null ? a : ArraySet.compare(a, b, comparator) >= 0 ? a : b;
+    }
+
+    @Override
+    public T lower(T t) {
+        return max(elementAt(liveBefore(main.lowerIndex(t) + 1)), inserted.lower(t));
+    }
+
+    @Override
+    public T floor(T t) {
+        return max(elementAt(liveBefore(main.floorIndex(t) + 1)), inserted.floor(t));
+    }
+
+    @Override
+    public T ceiling(T t) {
+        return min(elementAt(liveFrom(main.ceilingIndex(t))), inserted.ceiling(t));
+    }
+
+    @Override
+    public T higher(T t) {
+        return min(elementAt(liveFrom(main.higherIndex(t))), inserted.higher(t));
+    }
+
+    private T firstOrNull() {
+        return min(elementAt(liveFrom(0)), inserted.isEmpty() ? null : inserted.first());
+    }
+
+    private T lastOrNull() {
+        return max(elementAt(liveBefore(main.size())), inserted.isEmpty() ? null : inserted.last());
+    }
+
+    @Override
+    public T first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return firstOrNull();
+    }
+
+    @Override
+    public T last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return lastOrNull();
+    }
+
+    @Override
+    public T pollFirst() {
+        T first = isEmpty() ? null : firstOrNull();
+        if (first != null) {
+            remove(first);
+        }
+        return first;
+    }
+
+    @Override
+    public T pollLast() {
+        T last = isEmpty() ? null : lastOrNull();
+        if (last != null) {
+            remove(last);
+        }
+        return last;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Cursor(all(), false);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new Cursor(all(), true);
+    }
+
+    private Range all() {
+        return new Range(true, null, false, true, null, false, false);
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return all().descendingSet();
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        return all().subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        return all().headSet(toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        return all().tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    /**
+     * View of elements of this set between optional bounds, in ascending or descending order.
+     * Bounds are kept in ascending order; navigation methods are computed by this set and checked against them.
+     */
+    private class Range extends AbstractSet<T> implements NavigableSet<T> {
+        private final boolean fromStart;
+        private final T low;
+        private final boolean lowInclusive;
+        private final boolean toEnd;
+        private final T high;
+        private final boolean highInclusive;
+        private final boolean descending;
+
+        private Range(boolean fromStart, T low, boolean lowInclusive, boolean toEnd, T high, boolean highInclusive,
+                      boolean descending) {
+            if (!fromStart && !toEnd && ArraySet.compare(low, high, comparator) > 0) {
+                throw new IllegalArgumentException("fromElement > toElement");
+            }
+            this.fromStart = fromStart;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.toEnd = toEnd;
+            this.high = high;
+            this.highInclusive = highInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(T t) {
+            if (fromStart) {
+                return false;
+            }
+            int c = ArraySet.compare(t, low, comparator);
+            return c < 0 || c == 0 && !lowInclusive;
+        }
+
+        private boolean tooHigh(T t) {
+            if (toEnd) {
+                return false;
+            }
+            int c = ArraySet.compare(t, high, comparator);
+            return c > 0 || c == 0 && !highInclusive;
+        }
+
+        private boolean inRange(T t) {
+            return !tooLow(t) && !tooHigh(t);
+        }
+
+        /**
+         * Checks whether element may be a bound of subrange: exclusive bound may be equal to exclusive bound of range.
+         */
+        private boolean inRange(T t, boolean inclusive) {
+            if (inclusive) {
+                return inRange(t);
+            }
+            return (fromStart || ArraySet.compare(t, low, comparator) >= 0)
+                    && (toEnd || ArraySet.compare(t, high, comparator) <= 0);
+        }
+
+        private T checked(T t) {
+            return t == null || !inRange(t) ? null : t;
+        }
+
+        private T lowest() {
+            return checked(fromStart ? MutableArraySet.this.firstOrNull() : lowInclusive ? MutableArraySet.this.ceiling(low)
+                    : MutableArraySet.this.higher(low));
+        }
+
+        private T highest() {
+            return checked(toEnd ? MutableArraySet.this.lastOrNull() : highInclusive ? MutableArraySet.this.floor(high)
+                    : MutableArraySet.this.lower(high));
+        }
+
+        private T absoluteCeiling(T t) {
+            return tooLow(t) ? lowest() : checked(MutableArraySet.this.ceiling(t));
+        }
+
+        private T absoluteHigher(T t) {
+            return tooLow(t) ? lowest() : checked(MutableArraySet.this.higher(t));
+        }
+
+        private T absoluteFloor(T t) {
+            return tooHigh(t) ? highest() : checked(MutableArraySet.this.floor(t));
+        }
+
+        private T absoluteLower(T t) {
+            return tooHigh(t) ? highest() : checked(MutableArraySet.this.lower(t));
+        }
+
+        /**
+         * Returns position in the array of the first element of range.
+         */
+        private int lowPosition() {
+            return fromStart ? 0 : lowInclusive ? main.ceilingIndex(low) : main.higherIndex(low);
+        }
+
+        /**
+         * Returns position in the array after the last element of range.
+         */
+        private int highPosition() {
+            return toEnd ? main.size() : (highInclusive ? main.floorIndex(high) : main.lowerIndex(high)) + 1;
+        }
+
+        /**
+         * Returns inserted elements of range.
+         */
+        private NavigableSet<T> inserted() {
+            if (fromStart) {
+                return toEnd ? inserted : inserted.headSet(high, highInclusive);
+            }
+            return toEnd ? inserted.tailSet(low, lowInclusive) : inserted.subSet(low, lowInclusive, high, highInclusive);
+        }
+
+        @Override
+        public T lower(T t) {
+            return descending ? absoluteHigher(t) : absoluteLower(t);
+        }
+
+        @Override
+        public T floor(T t) {
+            return descending ? absoluteCeiling(t) : absoluteFloor(t);
+        }
+
+        @Override
+        public T ceiling(T t) {
+            return descending ? absoluteFloor(t) : absoluteCeiling(t);
+        }
+
+        @Override
+        public T higher(T t) {
+            return descending ? absoluteLower(t) : absoluteHigher(t);
+        }
+
+        private T firstOrNull() {
+            return descending ? highest() : lowest();
+        }
+
+        private T lastOrNull() {
+            return descending ? lowest() : highest();
+        }
+
+        @Override
+        public T first() {
+            T first = firstOrNull();
+            if (first == null) {
+                throw new NoSuchElementException();
+            }
+            return first;
+        }
+
+        @Override
+        public T last() {
+            T last = lastOrNull();
+            if (last == null) {
+                throw new NoSuchElementException();
+            }
+            return last;
+        }
+
+        @Override
+        public T pollFirst() {
+            T first = firstOrNull();
+            if (first != null) {
+                MutableArraySet.this.remove(first);
+            }
+            return first;
+        }
+
+        @Override
+        public T pollLast() {
+            T last = lastOrNull();
+            if (last != null) {
+                MutableArraySet.this.remove(last);
+            }
+            return last;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return inRange((T) o) && MutableArraySet.this.contains(o);
+        }
+
+        @Override
+        public boolean add(T t) {
+            if (!inRange(t)) {
+                throw new IllegalArgumentException("Element is out of range");
+            }
+            return MutableArraySet.this.add(t);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            return inRange((T) o) && MutableArraySet.this.remove(o);
+        }
+
+        /**
+         * Counts elements of the array in range, which aren't deleted, and inserted elements of range.
+         * Deleted positions are counted by words of bit set and inserted elements one by one, as {@code TreeSet}
+         * views do, so it takes O((to - from) / 64 + k) time for k inserted elements of range.
+         */
+        @Override
+        public int size() {
+            if (fromStart && toEnd) {
+                return MutableArraySet.this.size();
+            }
+            int from = lowPosition();
+            int to = highPosition();
+            int count = from < to ? to - from - deleted.get(from, to).cardinality() : 0;
+            return count + inserted().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return lowest() == null;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Cursor(this, descending);
+        }
+
+        @Override
+        public Iterator<T> descendingIterator() {
+            return new Cursor(this, !descending);
+        }
+
+        @Override
+        public NavigableSet<T> descendingSet() {
+            return new Range(fromStart, low, lowInclusive, toEnd, high, highInclusive, !descending);
+        }
+
+        @Override
+        public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+            return descending ? range(toElement, toInclusive, fromElement, fromInclusive)
+                    : range(fromElement, fromInclusive, toElement, toInclusive);
+        }
+
+        @Override
+        public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+            return descending ? tail(toElement, inclusive) : head(toElement, inclusive);
+        }
+
+        @Override
+        public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+            return descending ? head(fromElement, inclusive) : tail(fromElement, inclusive);
+        }
+
+        private Range range(T from, boolean fromInclusive, T to, boolean toInclusive) {
+            if (!inRange(from, fromInclusive) || !inRange(to, toInclusive)) {
+                throw new IllegalArgumentException("Element is out of range");
+            }
+            return new Range(false, from, fromInclusive, false, to, toInclusive, descending);
+        }
+
+        private Range head(T to, boolean inclusive) {
+            if (!inRange(to, inclusive)) {
+                throw new IllegalArgumentException("Element is out of range");
+            }
+            return new Range(fromStart, low, lowInclusive, false, to, inclusive, descending);
+        }
+
+        private Range tail(T from, boolean inclusive) {
+            if (!inRange(from, inclusive)) {
+                throw new IllegalArgumentException("Element is out of range");
+            }
+            return new Range(false, from, inclusive, toEnd, high, highInclusive, descending);
+        }
+
+        @Override
+        public SortedSet<T> subSet(T fromElement, T toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> headSet(T toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> tailSet(T fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        @Override
+        public Comparator<? super T> comparator() {
+            return descending ? Collections.reverseOrder(comparator) : comparator;
+        }
+    }
+
+    /**
+     * Iterator over range which merges elements of the array, skipping deleted ones, with inserted elements.
+     * It fails fast if set is modified not by it. After its own removals and after merges it finds
+     * its place again by the last returned element.
+     */
+    private class Cursor implements Iterator<T> {
+        private final Range range;
+        private final boolean descending;
+        private int expectedModCount;
+        private int expectedMerges;
+        /**
+         * Position in the array of the next candidate if ascending, position after it otherwise.
+         */
+        private int position;
+        /**
+         * Position in the array where iteration stops.
+         */
+        private int end;
+        private Iterator<T> insertedIterator;
+        private T nextInserted;
+        private boolean started;
+        private T last;
+        private boolean removable;
+
+        private Cursor(Range range, boolean descending) {
+            this.range = range;
+            this.descending = descending;
+            seek();
+        }
+
+        /**
+         * Positions cursor at the beginning of range or after the last returned element.
+         */
+        private void seek() {
+            expectedModCount = modCount;
+            expectedMerges = merges;
+            int low = range.lowPosition();
+            int high = range.highPosition();
+            NavigableSet<T> part = range.inserted();
+            if (descending) {
+                position = started ? Math.min(high, main.lowerIndex(last) + 1) : high;
+                end = low;
+                insertedIterator = (started ? part.headSet(last, false) : part).descendingIterator();
+            } else {
+                position = started ? Math.max(low, main.higherIndex(last)) : low;
+                end = high;
+                insertedIterator = (started ? part.tailSet(last, false) : part).iterator();
+            }
+            nextInserted = insertedIterator.hasNext() ? insertedIterator.next() : null;
+        }
+
+        private void check() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (merges != expectedMerges) {
+                seek();
+            }
+        }
+
+        /**
+         * Returns position of the next element of the array or -1.
+         */
+        private int nextPosition() {
+            if (descending) {
+                int i = liveBefore(position);
+                return i >= end ? i : -1;
+            }
+            int i = liveFrom(position);
+            return i < end ? i : -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            check();
+            return nextInserted != null || nextPosition() >= 0;
+        }
+
+        @Override
+        public T next() {
+            check();
+            int i = nextPosition();
+            T element = i < 0 ? null : main.get(i);
+            if (nextInserted != null && (element == null
+                    || ArraySet.compare(nextInserted, element, comparator) * (descending ? -1 : 1) < 0)) {
+                element = nextInserted;
+                nextInserted = insertedIterator.hasNext() ? insertedIterator.next() : null;
+            } else if (element != null) {
+                position = descending ? i : i + 1;
+            } else {
+                throw new NoSuchElementException();
+            }
+            started = true;
+            last = element;
+            removable = true;
+            return element;
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            check();
+            removable = false;
+            MutableArraySet.this.remove(last);
+            seek();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package ru.ifmo.ctddev.tolmachev.arrayset;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds {@code ArraySet}s of large collections in parallel.
+ * <p>
+ * Elements are sorted by stable fork-join merge sort with parallel merges, then every partition of
+ * sorted array marks first elements of runs of equal elements, and kept elements are copied to offsets
+ * given by prefix sums of partition counts. Result is the same as of
+ * {@link ArraySet#ArraySet(Collection, Comparator)}: of equal elements the first one in iteration order is kept.
+ * <p>
+ * Builder either uses given pool or creates pool of given parallelism for every build.
+ */
+public class ParallelArraySetBuilder {
+    /**
+     * Collections smaller than that are built sequentially, ranges smaller than that are merged sequentially.
+     */
+    private static final int MIN_GRAIN = 8192;
+    /**
+     * Count of sort and dedup partitions per thread, so threads which finish earlier get more work.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    /**
+     * Constructs builder with parallelism of common pool.
+     */
+    public ParallelArraySetBuilder() {
+        this(ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Constructs builder which creates pool of given parallelism for every build.
+     *
+     * @param parallelism count of threads.
+     */
+    public ParallelArraySetBuilder(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism should be positive");
+        }
+        this.pool = null;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Constructs builder which runs in given pool. Pool is not shut down by builder.
+     *
+     * @param pool pool to run in.
+     */
+    public ParallelArraySetBuilder(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+        this.parallelism = pool.getParallelism();
+    }
+
+    public <T> ArraySet<T> build(Collection<T> collection) {
+        return build(collection, null);
+    }
+
+    /**
+     * Constructs set of elements of given collection ordered by given comparator.
+     *
+     * @param collection elements of set.
+     * @param comparator comparator of elements or {@code null} for natural ordering.
+     * @param <T> type of elements.
+     * @return set of elements.
+     */
+    public <T> ArraySet<T> build(Collection<T> collection, Comparator<? super T> comparator) {
+        boolean unique = collection instanceof SortedSet
+                && Objects.equals(((SortedSet<?>) collection).comparator(), comparator);
+        if (unique || parallelism == 1 || collection.size() < MIN_GRAIN) {
+            return ArraySet.ofSortedList(ArraySet.sortedUnique(collection, comparator), comparator);
+        }
+
+        @SuppressWarnings("unchecked")
+        T[] array = (T[]) collection.toArray();
+        @SuppressWarnings("unchecked")
+        T[] temp = (T[]) new Object[array.length];
+        int partitions = parallelism * PARTITIONS_PER_THREAD;
+        int grain = Math.max(MIN_GRAIN, (array.length + partitions - 1) / partitions);
+
+        ForkJoinPool executor = pool == null ? new ForkJoinPool(parallelism) : pool;
+        try {
+            executor.invoke(new Sort<>(array, temp, 0, array.length, false, grain, comparator));
+            int size = executor.invoke(new Unique<>(array, temp, grain, comparator));
+            return ArraySet.ofSortedList(Arrays.asList(Arrays.copyOf(temp, size)), comparator);
+        } finally {
+            if (pool == null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Stably sorts range of {@code array}, putting result into {@code temp} if {@code toTemp},
+     * into {@code array} otherwise. Halves are sorted into the other array and merged back.
+     */
+    private static class Sort<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final T[] array;
+        private final T[] temp;
+        private final int from;
+        private final int to;
+        private final boolean toTemp;
+        private final int grain;
+        private final Comparator<? super T> comparator;
+
+        private Sort(T[] array, T[] temp, int from, int to, boolean toTemp, int grain,
+                     Comparator<? super T> comparator) {
+            this.array = array;
+            this.temp = temp;
+            this.from = from;
+            this.to = to;
+            this.toTemp = toTemp;
+            this.grain = grain;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                Arrays.sort(array, from, to, comparator);
+                if (toTemp) {
+                    System.arraycopy(array, from, temp, from, to - from);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Sort<>(array, temp, from, middle, !toTemp, grain, comparator),
+                    new Sort<>(array, temp, middle, to, !toTemp, grain, comparator));
+            T[] source = toTemp ? array : temp;
+            T[] target = toTemp ? temp : array;
+            if (ArraySet.compare(source[middle - 1], source[middle], comparator) <= 0) {
+                System.arraycopy(source, from, target, from, to - from);
+            } else {
+                new Merge<>(source, target, from, middle, middle, to, from, comparator).compute();
+            }
+        }
+    }
+
+    /**
+     * Stably merges two sorted ranges of {@code source} into {@code target}. Larger range is split
+     * in the middle and the other one at the position of its middle element, so both parts are merged in parallel.
+     */
+    private static class Merge<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final T[] source;
+        private final T[] target;
+        private final int leftFrom;
+        private final int leftTo;
+        private final int rightFrom;
+        private final int rightTo;
+        private final int targetFrom;
+        private final Comparator<? super T> comparator;
+
+        private Merge(T[] source, T[] target, int leftFrom, int leftTo, int rightFrom, int rightTo,
+                      int targetFrom, Comparator<? super T> comparator) {
+            this.source = source;
+            this.target = target;
+            this.leftFrom = leftFrom;
+            this.leftTo = leftTo;
+            this.rightFrom = rightFrom;
+            this.rightTo = rightTo;
+            this.targetFrom = targetFrom;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            int leftSize = leftTo - leftFrom;
+            int rightSize = rightTo - rightFrom;
+            if (leftSize + rightSize <= MIN_GRAIN) {
+                merge();
+                return;
+            }
+
+            int leftMiddle;
+            int rightMiddle;
+            if (leftSize >= rightSize) {
+                leftMiddle = (leftFrom + leftTo) >>> 1;
+                rightMiddle = bound(rightFrom, rightTo, source[leftMiddle], false);
+            } else {
+                rightMiddle = (rightFrom + rightTo) >>> 1;
+                leftMiddle = bound(leftFrom, leftTo, source[rightMiddle], true);
+            }
+            int targetMiddle = targetFrom + (leftMiddle - leftFrom) + (rightMiddle - rightFrom);
+            invokeAll(new Merge<>(source, target, leftFrom, leftMiddle, rightFrom, rightMiddle, targetFrom, comparator),
+                    new Merge<>(source, target, leftMiddle, leftTo, rightMiddle, rightTo, targetMiddle, comparator));
+        }
+
+        /**
+         * Returns index of the first element of range which is greater than key if {@code inclusive},
+         * not less than key otherwise. Equal elements of left range go before equal elements of right one.
+         */
+        private int bound(int from, int to, T key, boolean inclusive) {
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                int c = ArraySet.compare(source[middle], key, comparator);
+                if (inclusive ? c <= 0 : c < 0) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+            return from;
+        }
+
+        private void merge() {
+            int i = leftFrom;
+            int j = rightFrom;
+            int k = targetFrom;
+            while (i < leftTo && j < rightTo) {
+                target[k++] = ArraySet.compare(source[i], source[j], comparator) <= 0 ? source[i++] : source[j++];
+            }
+            System.arraycopy(source, i, target, k, leftTo - i);
+            k += leftTo - i;
+            System.arraycopy(source, j, target, k, rightTo - j);
+        }
+    }
+
+    /**
+     * Copies first element of every run of equal elements of sorted {@code array} to the beginning of
+     * {@code target} and returns count of copied elements. Partitions are counted in parallel,
+     * then copied in parallel to offsets given by prefix sums of counts.
+     */
+    private static class Unique<T> extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final T[] array;
+        private final T[] target;
+        private final int grain;
+        private final Comparator<? super T> comparator;
+
+        private Unique(T[] array, T[] target, int grain, Comparator<? super T> comparator) {
+            this.array = array;
+            this.target = target;
+            this.grain = grain;
+            this.comparator = comparator;
+        }
+
+        private boolean first(int i) {
+            return i == 0 || ArraySet.compare(array[i - 1], array[i], comparator) != 0;
+        }
+
+        @Override
+        protected Integer compute() {
+            int partitions = (array.length + grain - 1) / grain;
+            int[] offsets = new int[partitions + 1];
+            RecursiveAction[] counts = new RecursiveAction[partitions];
+            for (int p = 0; p < partitions; p++) {
+                int index = p;
+                counts[p] = action(() -> {
+                    int count = 0;
+                    for (int i = index * grain, to = Math.min(i + grain, array.length); i < to; i++) {
+                        if (first(i)) {
+                            count++;
+                        }
+                    }
+                    offsets[index + 1] = count;
+                });
+            }
+            invokeAll(counts);
+
+            for (int p = 0; p < partitions; p++) {
+                offsets[p + 1] += offsets[p];
+            }
+
+            RecursiveAction[] copies = new RecursiveAction[partitions];
+            for (int p = 0; p < partitions; p++) {
+                int index = p;
+                copies[p] = action(() -> {
+                    int k = offsets[index];
+                    for (int i = index * grain, to = Math.min(i + grain, array.length); i < to; i++) {
+                        if (first(i)) {
+                            target[k++] = array[i];
+                        }
+                    }
+                });
+            }
+            invokeAll(copies);
+            return offsets[partitions];
+        }
+
+        private static RecursiveAction action(Runnable runnable) {
+            return new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    runnable.run();
+                }
+            };
+        }
+    }
+}
@@ -3,10 +3,22 @@ package ru.ifmo.ctddev.tolmachev.concurrent;
 import info.kgeorgiy.java.advanced.concurrent.ListIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -17,28 +29,93 @@ import java.util.stream.Collectors;
  * It represents functions which use to :
  * find maximum and minimum in list,
  * check if all or any list element satisfy predicate,
+ * find the first or any element which satisfies predicate,
+ * reduce list by associative operation,
  * concatenates all list elements in string representation,
  * filter list by using predicate,
  * convert list by applying the function to each list's element.
- * All given functions are doing computations in parallel by using {@code Worker} and {@code Thread}.
+ * All given functions are doing computations in parallel by submitting {@code Worker}s to
+ * {@code ExecutorService}, by default to shared pool of daemon threads, which are reused between calls.
+ * The first part of list is always processed by the calling thread.
+ * <p>
+ * Lists which have less than {@code minPartSize} elements per thread are split into fewer parts,
+ * and list of one part is processed by the calling thread only. By default {@code minPartSize} is
+ * {@link #DEFAULT_MIN_PART_SIZE}, it can be given to constructor, 1 means no sequential cutoff.
+ * <p>
+ * In fork-join mode list is split recursively into parts of {@code grain} elements, which are processed
+ * in {@code ForkJoinPool}, so threads which are done with their parts steal parts of others.
+ * Parts are made larger if needed, so that list is split into at most requested count of threads parts,
+ * but threads which process them are given by the pool. Lists of at most {@code grain} elements
+ * or requested one thread are processed by the calling thread.
  * <p>
  * It also can uses {@code ParallelMapperImp} to compute result.
  * @author Tolmachev Daniil (Voidmaster)
  * @see ru.ifmo.ctddev.tolmachev.mapper.ParallelMapperImpl
  * @see info.kgeorgiy.java.advanced.concurrent.ListIP
  * @see info.kgeorgiy.java.advanced.concurrent.ScalarIP
+ * @see ru.ifmo.ctddev.tolmachev.concurrent.PrimitiveParallelism
  * @see ru.ifmo.ctddev.tolmachev.concurrent.Worker
- * @see java.lang.Thread
+ * @see java.util.concurrent.ExecutorService
  */
 public class IterativeParallelism implements ListIP {
+    private static final ExecutorService SHARED_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "iterative-parallelism");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Default minimal count of elements per thread: smaller parts cost more to hand over to thread than to process.
+     */
+    public static final int DEFAULT_MIN_PART_SIZE = 4096;
 
     private ParallelMapper mapper;
+    private ExecutorService executor = SHARED_EXECUTOR;
+    private int minPartSize = DEFAULT_MIN_PART_SIZE;
+    private ForkJoinPool pool;
+    private int grain;
 
     /**
-     * Constructs new instance of {@code IterativeParallelism} without {@code ParallelMapperImp}.
+     * Constructs new instance of {@code IterativeParallelism} which uses shared pool of threads
+     * and {@link #DEFAULT_MIN_PART_SIZE} as minimal count of elements per thread.
      */
     public IterativeParallelism() {}
 
+    /**
+     * Constructs new instance of {@code IterativeParallelism} which uses shared pool of threads.
+     * @param minPartSize minimal count of elements which are processed by one thread.
+     */
+    public IterativeParallelism(int minPartSize) {
+        this(SHARED_EXECUTOR, minPartSize);
+    }
+
+    /**
+     * Constructs new instance of {@code IterativeParallelism} which uses given executor.
+     * Executor should be able to run requested count of threads concurrently.
+     * @param executor executor which would be used.
+     * @param minPartSize minimal count of elements which are processed by one thread.
+     */
+    public IterativeParallelism(ExecutorService executor, int minPartSize) {
+        if (minPartSize <= 0) {
+            throw new IllegalArgumentException("Minimal part size should be positive");
+        }
+        this.executor = executor;
+        this.minPartSize = minPartSize;
+    }
+
+    /**
+     * Constructs new instance of {@code IterativeParallelism} in fork-join mode.
+     * @param pool pool which would be used.
+     * @param grain count of elements which are processed by one task.
+     */
+    public IterativeParallelism(ForkJoinPool pool, int grain) {
+        if (grain <= 0) {
+            throw new IllegalArgumentException("Grain should be positive");
+        }
+        this.pool = pool;
+        this.grain = grain;
+    }
+
     /**
      * Construct new instance of {@code IterativeParallelism} with {@code ParallelMapperImp}.
      * @param mapper mapper with would be included.
@@ -57,14 +134,23 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public String join(int i, List<?> list) throws InterruptedException {
-        StringBuilder builder = new StringBuilder();
-        map(i, list, Object::toString).forEach(builder::append);
+        List<StringBuilder> parts = doParallel(i, list, x -> {
+            StringBuilder part = new StringBuilder();
+            for (Object element : x) {
+                part.append(element.toString());
+            }
+            return part;
+        });
 
+        StringBuilder builder = new StringBuilder(parts.stream().mapToInt(StringBuilder::length).sum());
+        parts.forEach(builder::append);
         return builder.toString();
     }
 
     /**
      * Returns filtered list which elements are satisfy predicate and do it in parallel.
+     * At first every thread marks and counts satisfying elements of its part, then offsets of parts
+     * are summed up and every thread sets marked elements of its part directly in result list, which is allocated once.
      *
      * @param i count of threads which use to compute.
      * @param list list of elements which would be filtered.
@@ -75,8 +161,40 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> List<T> filter(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        List<T> result = new ArrayList<>();
-        doParallel(i, list, x -> x.stream().filter(predicate).collect(Collectors.toList())).forEach(result::addAll);
+        if (list.isEmpty()) {
+            return new ArrayList<>();
+        }
+        boolean[] satisfies = new boolean[list.size()];
+        List<int[]> counts = doRanges(i, list.size(), (from, to) -> {
+            int count = 0;
+            for (int j = from; j < to; j++) {
+                if (predicate.test(list.get(j))) {
+                    satisfies[j] = true;
+                    count++;
+                }
+            }
+            return new int[]{from, count};
+        });
+
+        int[] starts = new int[counts.size()];
+        int[] offsets = new int[counts.size()];
+        int size = 0;
+        for (int k = 0; k < counts.size(); k++) {
+            starts[k] = counts.get(k)[0];
+            offsets[k] = size;
+            size += counts.get(k)[1];
+        }
+
+        List<T> result = new ArrayList<>(Collections.nCopies(size, null));
+        doRanges(i, list.size(), (from, to) -> {
+            int offset = offsets[Arrays.binarySearch(starts, from)];
+            for (int j = from; j < to; j++) {
+                if (satisfies[j]) {
+                    result.set(offset++, list.get(j));
+                }
+            }
+            return null;
+        });
         return result;
     }
 
@@ -98,6 +216,7 @@ public class IterativeParallelism implements ListIP {
 
     /**
      * Returns list which is converted by applying the function to each list's element and do it in parallel.
+     * Every thread sets results of its part directly in result list, which is allocated once.
      *
      * @param i count of threads which use to compute.
      * @param list list to be converted.
@@ -109,8 +228,64 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T, U> List<U> map(int i, List<? extends T> list, Function<? super T, ? extends U> function) throws InterruptedException {
-        List<U> result = new ArrayList<>();
-        doParallel(i, list, x -> x.stream().map(function).collect(Collectors.toList())).forEach(result::addAll);
+        List<U> result = new ArrayList<>(Collections.nCopies(list.size(), null));
+        if (!list.isEmpty()) {
+            doRanges(i, list.size(), (from, to) -> {
+                for (int j = from; j < to; j++) {
+                    result.set(j, function.apply(list.get(j)));
+                }
+                return null;
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Reduces list by given associative operation and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param list list to be reduced.
+     * @param identity identity of operation.
+     * @param operation associative operation.
+     * @param <T> list element's type.
+     * @return result of reduction, identity for empty list.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public <T> T reduce(int i, List<? extends T> list, T identity, BinaryOperator<T> operation) throws InterruptedException {
+        return mapReduce(i, list, identity, operation, operation);
+    }
+
+    /**
+     * Accumulates every part of list into result starting from identity and combines results of parts
+     * in order of parts, in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param list list to be reduced.
+     * @param identity identity of combiner.
+     * @param accumulator function which adds element to result.
+     * @param combiner associative function which combines results of parts.
+     * @param <T> list element's type.
+     * @param <U> result type.
+     * @return result of reduction, identity for empty list.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public <T, U> U mapReduce(int i, List<? extends T> list, U identity, BiFunction<U, ? super T, U> accumulator,
+                              BinaryOperator<U> combiner) throws InterruptedException {
+        if (list.isEmpty()) {
+            return identity;
+        }
+        List<U> parts = doParallel(i, list, x -> {
+            U result = identity;
+            for (T element : x) {
+                result = accumulator.apply(result, element);
+            }
+            return result;
+        });
+
+        U result = identity;
+        for (U part : parts) {
+            result = combiner.apply(result, part);
+        }
         return result;
     }
 
@@ -141,7 +316,7 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> boolean all(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        return doParallel(i, list, x -> x.stream().allMatch(predicate)).stream().allMatch(Predicate.isEqual(true));
+        return findAnyIndex(i, list, predicate.negate()) == -1;
     }
 
     /**
@@ -156,7 +331,126 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> boolean any(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        return doParallel(i, list, x -> x.stream().anyMatch(predicate)).stream().anyMatch(Predicate.isEqual(true));
+        return findAnyIndex(i, list, predicate) != -1;
+    }
+
+    /**
+     * Returns index of the first element of list which satisfies given predicate.
+     * Threads stop as soon as the rest of their parts is after an already found element.
+     *
+     * @param i count of threads which use to compute.
+     * @param list list to be searched.
+     * @param predicate predicate which use to check.
+     * @param <T> list element's type.
+     * @return index of the first satisfying element or -1 if there is no such element.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public <T> int indexOf(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
+        if (list.isEmpty()) {
+            return -1;
+        }
+        AtomicInteger first = new AtomicInteger(Integer.MAX_VALUE);
+        doRanges(i, list.size(), (from, to) -> {
+            for (int j = from; j < to && j < first.get(); j++) {
+                if (predicate.test(list.get(j))) {
+                    first.accumulateAndGet(j, Math::min);
+                    break;
+                }
+            }
+            return null;
+        });
+        return first.get() == Integer.MAX_VALUE ? -1 : first.get();
+    }
+
+    /**
+     * Returns the first element of list which satisfies given predicate.
+     *
+     * @param i count of threads which use to compute.
+     * @param list list to be searched.
+     * @param predicate predicate which use to check.
+     * @param <T> list element's type.
+     * @return the first satisfying element or empty {@code Optional} if there is no such element.
+     * @throws InterruptedException if execution was interrupted.
+     * @throws NullPointerException if found element is null.
+     * @see #indexOf(int, List, Predicate)
+     */
+    public <T> Optional<T> findFirst(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
+        int index = indexOf(i, list, predicate);
+        return index == -1 ? Optional.empty() : Optional.of(list.get(index));
+    }
+
+    /**
+     * Returns any element of list which satisfies given predicate. All threads stop as soon as one of them finds it.
+     *
+     * @param i count of threads which use to compute.
+     * @param list list to be searched.
+     * @param predicate predicate which use to check.
+     * @param <T> list element's type.
+     * @return satisfying element or empty {@code Optional} if there is no such element.
+     * @throws InterruptedException if execution was interrupted.
+     * @throws NullPointerException if found element is null.
+     */
+    public <T> Optional<T> findAny(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
+        int index = findAnyIndex(i, list, predicate);
+        return index == -1 ? Optional.empty() : Optional.of(list.get(index));
+    }
+
+    private <T> int findAnyIndex(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
+        if (list.isEmpty()) {
+            return -1;
+        }
+        AtomicInteger found = new AtomicInteger(-1);
+        doRanges(i, list.size(), (from, to) -> {
+            for (int j = from; j < to && found.get() == -1; j++) {
+                if (predicate.test(list.get(j))) {
+                    found.compareAndSet(-1, j);
+                    break;
+                }
+            }
+            return null;
+        });
+        return found.get();
+    }
+
+    /**
+     * Splits indices from 0 to size into the same parts as list of given size and applies action
+     * to bounds of every part, so arrays and lists which are accessed by index are processed
+     * without copying or boxing of elements. Size should be positive.
+     *
+     * @param threadsCount count of threads which use to compute.
+     * @param size count of indices.
+     * @param action function of bounds of part, inclusive and exclusive.
+     * @param <R> result type.
+     * @return results of parts in order of parts.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    <R> List<R> doRanges(int threadsCount, int size, RangeFunction<R> action) throws InterruptedException {
+        return doParallel(threadsCount, indices(size), part -> action.apply(part.get(0), part.get(0) + part.size()));
+    }
+
+    /**
+     * Function of range of indices.
+     */
+    @FunctionalInterface
+    interface RangeFunction<R> {
+        R apply(int from, int to);
+    }
+
+    /**
+     * Returns list of indices from 0 to size, so parts of it are ranges of indices of list of given size.
+     */
+    private static List<Integer> indices(int size) {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     private <T> List<List<? extends T>> getPartsList(List<? extends T> list, int threadsCount) {
@@ -177,26 +471,103 @@ public class IterativeParallelism implements ListIP {
 
     private <T, R> List<R> doParallel(int threadsCount, List<? extends T> list,
                                       Function<List<? extends T>, R> action) throws InterruptedException {
-        List<Worker<T, R>> workers = new ArrayList<>();
-        List<Thread> threads = new ArrayList<>();
-
-        threadsCount = Math.min(list.size(), threadsCount);
+        if (pool != null && mapper == null) {
+            return doForkJoin(threadsCount, list, action);
+        }
+        threadsCount = Math.max(1, Math.min(threadsCount, list.size() / minPartSize));
+        if (threadsCount == 1) {
+            return Collections.singletonList(action.apply(list));
+        }
         List<List<? extends T>> parts = getPartsList(list, threadsCount);
 
-        if (mapper == null) {
-            workers.addAll(parts.stream().map(part -> new Worker<>(part, action)).collect(Collectors.toList()));
-            for (int i = 0; i < threadsCount; i++) {
-                threads.add(new Thread(workers.get(i)));
-                threads.get(i).start();
-            }
+        if (mapper != null) {
+            return mapper.map(action, parts);
+        }
 
-            for (int i = 0; i < threadsCount; i++) {
-                threads.get(i).join();
+        List<Worker<T, R>> workers = parts.stream().map(part -> new Worker<>(part, action)).collect(Collectors.toList());
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 1; i < threadsCount; i++) {
+                futures.add(executor.submit(workers.get(i)));
+            }
+            workers.get(0).run();
+            for (Future<?> future : futures) {
+                future.get();
             }
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
 
-            return workers.stream().map(Worker::getResult).collect(Collectors.toList());
-        } else {
-            return mapper.map(action, parts);
+        return workers.stream().map(Worker::getResult).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, R> List<R> doForkJoin(int threadsCount, List<? extends T> list, Function<List<? extends T>, R> action)
+            throws InterruptedException {
+        int grain = Math.max(this.grain, (list.size() - 1) / Math.max(1, threadsCount) + 1);
+        if (list.size() <= grain) {
+            return Collections.singletonList(action.apply(list));
+        }
+        Object[] results = new Object[(list.size() + grain - 1) / grain];
+        Future<?> future = pool.submit(new Range<>(list, 0, list.size(), grain, action, results));
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        } finally {
+            future.cancel(true);
+        }
+        return (List<R>) Arrays.asList(results);
+    }
+
+    private static RuntimeException rethrow(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /**
+     * Task which processes range of list, split into parts of {@code grain} elements.
+     * Result of part is stored by its index.
+     */
+    private static class Range<T, R> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends T> list;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final Function<List<? extends T>, R> action;
+        private final Object[] results;
+
+        private Range(List<? extends T> list, int from, int to, int grain,
+                      Function<List<? extends T>, R> action, Object[] results) {
+            this.list = list;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                results[from / grain] = action.apply(list.subList(from, to));
+                return;
+            }
+            int parts = (to - from + grain - 1) / grain;
+            int middle = from + parts / 2 * grain;
+            invokeAll(new Range<>(list, from, middle, grain, action, results),
+                    new Range<>(list, middle, to, grain, action, results));
         }
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package ru.ifmo.ctddev.tolmachev.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares static partitioning of {@code IterativeParallelism} with fork-join mode
+ * on lists whose elements have skewed processing costs.
+ * <p>
+ * Usage : ParallelismBenchmark [size [threads [repeats]]].
+ * Cost of element is a count of iterations of busy loop. Distributions are:
+ * uniform, heavy head (the first part of static partitioning has almost all work)
+ * and single slow element (one element costs as much as all others together).
+ *
+ * @author Tolmachev Daniil (Voidmaster)
+ */
+public class ParallelismBenchmark {
+    private static final int COST = 1000;
+    private static final int[] GRAINS = {1, 16, 256};
+
+    /**
+     * Keeps results alive, so computations are not eliminated.
+     */
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int repeats = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        List<Integer> uniform = new ArrayList<>(size);
+        List<Integer> heavyHead = new ArrayList<>(size);
+        List<Integer> singleSlow = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            uniform.add(COST);
+            heavyHead.add(i < size / threads ? COST * threads : 1);
+            singleSlow.add(i == 0 ? COST * size : COST);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        for (int i = 0; i < repeats; i++) {
+            System.out.println(size + " elements, " + threads + " threads:");
+            measure("uniform", uniform, threads, pool);
+            measure("heavy head", heavyHead, threads, pool);
+            measure("single slow element", singleSlow, threads, pool);
+        }
+        pool.shutdown();
+    }
+
+    private static void measure(String name, List<Integer> costs, int threads, ForkJoinPool pool)
+            throws InterruptedException {
+        measure(name + ", static", new IterativeParallelism(), costs, threads);
+        for (int grain : GRAINS) {
+            measure(name + ", fork-join " + grain, new IterativeParallelism(pool, grain), costs, threads);
+        }
+    }
+
+    private static void measure(String name, IterativeParallelism parallelism, List<Integer> costs, int threads)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        sink = parallelism.map(threads, costs, ParallelismBenchmark::work);
+        long time = System.nanoTime() - start;
+        System.out.printf("  %-40s %8.1f ms%n", name, time / 1e6);
+    }
+
+    private static long work(int cost) {
+        long x = cost;
+        for (int i = 0; i < cost; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        return x;
+    }
+}
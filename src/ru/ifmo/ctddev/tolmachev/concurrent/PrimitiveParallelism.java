@@ -0,0 +1,480 @@
+package ru.ifmo.ctddev.tolmachev.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * This class represents parallel operations on arrays of {@code int}, {@code long} and {@code double} values:
+ * sum, minimum and maximum of array, count of values which satisfy predicate,
+ * filter array by using predicate and convert array by applying the function to each value.
+ * <p>
+ * Arrays are split into parts by {@code IterativeParallelism}, so count of threads, executor, fork-join mode
+ * and {@code ParallelMapper} are the same as of it. Every part is processed as range of indices of array,
+ * so values are never boxed: only results of parts are.
+ * <p>
+ * Sums of {@code int} and {@code long} values overflow as in sequential loop.
+ * Sums of {@code double} values are added by parts, so they may differ from sequential sum by rounding.
+ * Minimum and maximum of {@code double} values are NaN if any value is NaN, as of {@code Math.min} and {@code Math.max}.
+ * <p>
+ * Splitting and combining of parts is shared by all types, only loops over parts are written for every type,
+ * so they are compiled without calls per value.
+ *
+ * @author Tolmachev Daniil (Voidmaster)
+ * @see ru.ifmo.ctddev.tolmachev.concurrent.IterativeParallelism
+ */
+public class PrimitiveParallelism {
+    private final IterativeParallelism parallelism;
+
+    /**
+     * Constructs new instance of {@code PrimitiveParallelism} which uses shared pool of threads.
+     */
+    public PrimitiveParallelism() {
+        this(new IterativeParallelism());
+    }
+
+    /**
+     * Constructs new instance of {@code PrimitiveParallelism} which splits arrays as given {@code IterativeParallelism}.
+     * @param parallelism parallelism which would be used.
+     */
+    public PrimitiveParallelism(IterativeParallelism parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Constructs new instance of {@code PrimitiveParallelism} with {@code ParallelMapperImp}.
+     * @param mapper mapper with would be included.
+     */
+    public PrimitiveParallelism(ParallelMapper mapper) {
+        this(new IterativeParallelism(mapper));
+    }
+
+    /**
+     * Returns sum of values of array and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @return sum of values, 0 for empty array.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public int sum(int i, int[] array) throws InterruptedException {
+        return reduce(i, array.length, 0, (from, to) -> {
+            int sum = 0;
+            for (int j = from; j < to; j++) {
+                sum += array[j];
+            }
+            return sum;
+        }, Integer::sum);
+    }
+
+    /**
+     * Returns sum of values of array and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @return sum of values, 0 for empty array.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public long sum(int i, long[] array) throws InterruptedException {
+        return reduce(i, array.length, 0L, (from, to) -> {
+            long sum = 0;
+            for (int j = from; j < to; j++) {
+                sum += array[j];
+            }
+            return sum;
+        }, Long::sum);
+    }
+
+    /**
+     * Returns sum of values of array and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @return sum of values, 0 for empty array.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public double sum(int i, double[] array) throws InterruptedException {
+        return reduce(i, array.length, 0.0, (from, to) -> {
+            double sum = 0;
+            for (int j = from; j < to; j++) {
+                sum += array[j];
+            }
+            return sum;
+        }, Double::sum);
+    }
+
+    /**
+     * Returns maximum value of array and do it in parallel.
+     * For {@code double} values returns NaN if any value is NaN.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @return maximum value.
+     * @throws InterruptedException if execution was interrupted.
+     * @throws NoSuchElementException if array is empty.
+     */
+    public int maximum(int i, int[] array) throws InterruptedException {
+        checkNotEmpty(array.length);
+        return reduce(i, array.length, Integer.MIN_VALUE, (from, to) -> {
+            int max = Integer.MIN_VALUE;
+            for (int j = from; j < to; j++) {
+                max = Math.max(max, array[j]);
+            }
+            return max;
+        }, Math::max);
+    }
+
+    /**
+     * Returns maximum value of array and do it in parallel.
+     * For {@code double} values returns NaN if any value is NaN.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @return maximum value.
+     * @throws InterruptedException if execution was interrupted.
+     * @throws NoSuchElementException if array is empty.
+     */
+    public long maximum(int i, long[] array) throws InterruptedException {
+        checkNotEmpty(array.length);
+        return reduce(i, array.length, Long.MIN_VALUE, (from, to) -> {
+            long max = Long.MIN_VALUE;
+            for (int j = from; j < to; j++) {
+                max = Math.max(max, array[j]);
+            }
+            return max;
+        }, Math::max);
+    }
+
+    /**
+     * Returns maximum value of array and do it in parallel.
+     * For {@code double} values returns NaN if any value is NaN.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @return maximum value.
+     * @throws InterruptedException if execution was interrupted.
+     * @throws NoSuchElementException if array is empty.
+     */
+    public double maximum(int i, double[] array) throws InterruptedException {
+        checkNotEmpty(array.length);
+        return reduce(i, array.length, Double.NEGATIVE_INFINITY, (from, to) -> {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int j = from; j < to; j++) {
+                max = Math.max(max, array[j]);
+            }
+            return max;
+        }, Math::max);
+    }
+
+    /**
+     * Returns minimum value of array and do it in parallel.
+     * For {@code double} values returns NaN if any value is NaN.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @return minimum value.
+     * @throws InterruptedException if execution was interrupted.
+     * @throws NoSuchElementException if array is empty.
+     */
+    public int minimum(int i, int[] array) throws InterruptedException {
+        checkNotEmpty(array.length);
+        return reduce(i, array.length, Integer.MAX_VALUE, (from, to) -> {
+            int min = Integer.MAX_VALUE;
+            for (int j = from; j < to; j++) {
+                min = Math.min(min, array[j]);
+            }
+            return min;
+        }, Math::min);
+    }
+
+    /**
+     * Returns minimum value of array and do it in parallel.
+     * For {@code double} values returns NaN if any value is NaN.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @return minimum value.
+     * @throws InterruptedException if execution was interrupted.
+     * @throws NoSuchElementException if array is empty.
+     */
+    public long minimum(int i, long[] array) throws InterruptedException {
+        checkNotEmpty(array.length);
+        return reduce(i, array.length, Long.MAX_VALUE, (from, to) -> {
+            long min = Long.MAX_VALUE;
+            for (int j = from; j < to; j++) {
+                min = Math.min(min, array[j]);
+            }
+            return min;
+        }, Math::min);
+    }
+
+    /**
+     * Returns minimum value of array and do it in parallel.
+     * For {@code double} values returns NaN if any value is NaN.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @return minimum value.
+     * @throws InterruptedException if execution was interrupted.
+     * @throws NoSuchElementException if array is empty.
+     */
+    public double minimum(int i, double[] array) throws InterruptedException {
+        checkNotEmpty(array.length);
+        return reduce(i, array.length, Double.POSITIVE_INFINITY, (from, to) -> {
+            double min = Double.POSITIVE_INFINITY;
+            for (int j = from; j < to; j++) {
+                min = Math.min(min, array[j]);
+            }
+            return min;
+        }, Math::min);
+    }
+
+    /**
+     * Returns count of values of array which satisfy predicate and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @param predicate predicate which use to check.
+     * @return count of satisfying values.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public int count(int i, int[] array, IntPredicate predicate) throws InterruptedException {
+        return reduce(i, array.length, 0, (from, to) -> {
+            int count = 0;
+            for (int j = from; j < to; j++) {
+                if (predicate.test(array[j])) {
+                    count++;
+                }
+            }
+            return count;
+        }, Integer::sum);
+    }
+
+    /**
+     * Returns count of values of array which satisfy predicate and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @param predicate predicate which use to check.
+     * @return count of satisfying values.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public int count(int i, long[] array, LongPredicate predicate) throws InterruptedException {
+        return reduce(i, array.length, 0, (from, to) -> {
+            int count = 0;
+            for (int j = from; j < to; j++) {
+                if (predicate.test(array[j])) {
+                    count++;
+                }
+            }
+            return count;
+        }, Integer::sum);
+    }
+
+    /**
+     * Returns count of values of array which satisfy predicate and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @param predicate predicate which use to check.
+     * @return count of satisfying values.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public int count(int i, double[] array, DoublePredicate predicate) throws InterruptedException {
+        return reduce(i, array.length, 0, (from, to) -> {
+            int count = 0;
+            for (int j = from; j < to; j++) {
+                if (predicate.test(array[j])) {
+                    count++;
+                }
+            }
+            return count;
+        }, Integer::sum);
+    }
+
+    /**
+     * Returns array of values which satisfy predicate in the same order and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @param predicate predicate which use to filter array.
+     * @return array of filtered values.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public int[] filter(int i, int[] array, IntPredicate predicate) throws InterruptedException {
+        return concat(i, array.length, int[]::new, (from, to) -> {
+            int[] part = new int[to - from];
+            int size = 0;
+            for (int j = from; j < to; j++) {
+                if (predicate.test(array[j])) {
+                    part[size++] = array[j];
+                }
+            }
+            return Arrays.copyOf(part, size);
+        });
+    }
+
+    /**
+     * Returns array of values which satisfy predicate in the same order and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @param predicate predicate which use to filter array.
+     * @return array of filtered values.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public long[] filter(int i, long[] array, LongPredicate predicate) throws InterruptedException {
+        return concat(i, array.length, long[]::new, (from, to) -> {
+            long[] part = new long[to - from];
+            int size = 0;
+            for (int j = from; j < to; j++) {
+                if (predicate.test(array[j])) {
+                    part[size++] = array[j];
+                }
+            }
+            return Arrays.copyOf(part, size);
+        });
+    }
+
+    /**
+     * Returns array of values which satisfy predicate in the same order and do it in parallel.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array of values.
+     * @param predicate predicate which use to filter array.
+     * @return array of filtered values.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public double[] filter(int i, double[] array, DoublePredicate predicate) throws InterruptedException {
+        return concat(i, array.length, double[]::new, (from, to) -> {
+            double[] part = new double[to - from];
+            int size = 0;
+            for (int j = from; j < to; j++) {
+                if (predicate.test(array[j])) {
+                    part[size++] = array[j];
+                }
+            }
+            return Arrays.copyOf(part, size);
+        });
+    }
+
+    /**
+     * Returns array which is converted by applying the function to each value and do it in parallel.
+     * Every thread writes results of its part directly into result array.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array to be converted.
+     * @param function function which use to convert values.
+     * @return converted array.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public int[] map(int i, int[] array, IntUnaryOperator function) throws InterruptedException {
+        int[] result = new int[array.length];
+        forEachRange(i, array.length, (from, to) -> {
+            for (int j = from; j < to; j++) {
+                result[j] = function.applyAsInt(array[j]);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Returns array which is converted by applying the function to each value and do it in parallel.
+     * Every thread writes results of its part directly into result array.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array to be converted.
+     * @param function function which use to convert values.
+     * @return converted array.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public long[] map(int i, long[] array, LongUnaryOperator function) throws InterruptedException {
+        long[] result = new long[array.length];
+        forEachRange(i, array.length, (from, to) -> {
+            for (int j = from; j < to; j++) {
+                result[j] = function.applyAsLong(array[j]);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Returns array which is converted by applying the function to each value and do it in parallel.
+     * Every thread writes results of its part directly into result array.
+     *
+     * @param i count of threads which use to compute.
+     * @param array array to be converted.
+     * @param function function which use to convert values.
+     * @return converted array.
+     * @throws InterruptedException if execution was interrupted.
+     */
+    public double[] map(int i, double[] array, DoubleUnaryOperator function) throws InterruptedException {
+        double[] result = new double[array.length];
+        forEachRange(i, array.length, (from, to) -> {
+            for (int j = from; j < to; j++) {
+                result[j] = function.applyAsDouble(array[j]);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Reduces results of parts of array of given length by combiner, identity for empty array.
+     */
+    private <R> R reduce(int i, int length, R identity, IterativeParallelism.RangeFunction<R> part,
+                         BinaryOperator<R> combiner) throws InterruptedException {
+        R result = identity;
+        if (length > 0) {
+            for (R value : parallelism.doRanges(i, length, part)) {
+                result = combiner.apply(result, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Concatenates arrays which are results of parts of array of given length.
+     */
+    private <A> A concat(int i, int length, IntFunction<A> allocate, IterativeParallelism.RangeFunction<A> part)
+            throws InterruptedException {
+        if (length == 0) {
+            return allocate.apply(0);
+        }
+        List<A> parts = parallelism.doRanges(i, length, part);
+        A result = allocate.apply(parts.stream().mapToInt(Array::getLength).sum());
+        int size = 0;
+        for (A array : parts) {
+            int partLength = Array.getLength(array);
+            System.arraycopy(array, 0, result, size, partLength);
+            size += partLength;
+        }
+        return result;
+    }
+
+    private void forEachRange(int i, int length, IterativeParallelism.RangeFunction<Void> action)
+            throws InterruptedException {
+        if (length > 0) {
+            parallelism.doRanges(i, length, action);
+        }
+    }
+
+    private static void checkNotEmpty(int length) {
+        if (length == 0) {
+            throw new NoSuchElementException("Array is empty");
+        }
+    }
+}
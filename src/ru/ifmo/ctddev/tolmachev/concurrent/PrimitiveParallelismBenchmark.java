@@ -0,0 +1,65 @@
+package ru.ifmo.ctddev.tolmachev.concurrent;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Compares operations of {@code PrimitiveParallelism} on arrays with the same operations
+ * of {@code IterativeParallelism} on lists of boxed values.
+ * <p>
+ * Usage : PrimitiveParallelismBenchmark [size [threads [repeats]]].
+ * Every operation is run {@code repeats} times, the first runs warm up the JIT.
+ *
+ * @author Tolmachev Daniil (Voidmaster)
+ */
+public class PrimitiveParallelismBenchmark {
+    /**
+     * Keeps results alive, so computations are not eliminated.
+     */
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int repeats = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Random random = new Random(1);
+        int[] ints = random.ints(size).toArray();
+        List<Integer> boxedInts = Arrays.stream(ints).boxed().collect(Collectors.toList());
+        double[] doubles = random.doubles(size).toArray();
+        List<Double> boxedDoubles = Arrays.stream(doubles).boxed().collect(Collectors.toList());
+
+        IterativeParallelism boxed = new IterativeParallelism();
+        PrimitiveParallelism primitive = new PrimitiveParallelism(boxed);
+        for (int i = 0; i < repeats; i++) {
+            System.out.println(size + " elements, " + threads + " threads:");
+            measure("int sum, boxed", () -> boxed.reduce(threads, boxedInts, 0, Integer::sum));
+            measure("int sum, primitive", () -> primitive.sum(threads, ints));
+            measure("int maximum, boxed", () -> boxed.maximum(threads, boxedInts, Comparator.naturalOrder()));
+            measure("int maximum, primitive", () -> primitive.maximum(threads, ints));
+            measure("int filter, boxed", () -> boxed.filter(threads, boxedInts, x -> x % 3 == 0));
+            measure("int filter, primitive", () -> primitive.filter(threads, ints, x -> x % 3 == 0));
+            measure("int map, boxed", () -> boxed.map(threads, boxedInts, x -> x * 31 + 7));
+            measure("int map, primitive", () -> primitive.map(threads, ints, x -> x * 31 + 7));
+            measure("double sum, boxed", () -> boxed.reduce(threads, boxedDoubles, 0.0, Double::sum));
+            measure("double sum, primitive", () -> primitive.sum(threads, doubles));
+            measure("double map, boxed", () -> boxed.map(threads, boxedDoubles, Math::sqrt));
+            measure("double map, primitive", () -> primitive.map(threads, doubles, Math::sqrt));
+        }
+    }
+
+    private static void measure(String name, Operation operation) throws InterruptedException {
+        long start = System.nanoTime();
+        sink = operation.run();
+        long time = System.nanoTime() - start;
+        System.out.printf("  %-40s %8.1f ms%n", name, time / 1e6);
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        Object run() throws InterruptedException;
+    }
+}
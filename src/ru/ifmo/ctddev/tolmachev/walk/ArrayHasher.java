@@ -0,0 +1,45 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base class of {@code Hasher} which processes bytes from arrays only.
+ * <p>
+ * Bytes of buffers without accessible array are copied into internal array by chunks.
+ * Subclasses provide hash value through {@link #digest(byte[])}.
+ */
+abstract class ArrayHasher implements Hasher {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final int digestLength;
+    private byte[] chunk;
+
+    ArrayHasher(int digestLength) {
+        this.digestLength = digestLength;
+    }
+
+    @Override
+    public byte[] digest() {
+        byte[] result = new byte[digestLength];
+        digest(result);
+        return result;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE];
+        }
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            update(chunk, 0, length);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+/**
+ * {@code HashProvider} of CRC-32C (Castagnoli) checksum.
+ * <p>
+ * Uses slicing-by-8 tables, so eight bytes are processed by eight table lookups.
+ */
+public class Crc32cProvider implements HashProvider {
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int k = 0; k < 8; k++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLES[0][n] = crc;
+        }
+        for (int n = 0; n < 256; n++) {
+            for (int t = 1; t < 8; t++) {
+                int previous = TABLES[t - 1][n];
+                TABLES[t][n] = (previous >>> 8) ^ TABLES[0][previous & 0xFF];
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "CRC32C";
+    }
+
+    @Override
+    public int getDigestLength() {
+        return 4;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new Crc32cHasher();
+    }
+
+    private static class Crc32cHasher extends ArrayHasher {
+        private int crc = 0xFFFFFFFF;
+
+        private Crc32cHasher() {
+            super(4);
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+            int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+            int c = crc;
+            int i = offset;
+            int end = offset + length;
+            for (; i + 8 <= end; i += 8) {
+                c ^= (bytes[i] & 0xFF) | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF) << 16 | (bytes[i + 3] & 0xFF) << 24;
+                c = t7[c & 0xFF] ^ t6[(c >>> 8) & 0xFF] ^ t5[(c >>> 16) & 0xFF] ^ t4[c >>> 24]
+                        ^ t3[bytes[i + 4] & 0xFF] ^ t2[bytes[i + 5] & 0xFF] ^ t1[bytes[i + 6] & 0xFF] ^ t0[bytes[i + 7] & 0xFF];
+            }
+            for (; i < end; i++) {
+                c = (c >>> 8) ^ t0[(c ^ bytes[i]) & 0xFF];
+            }
+            crc = c;
+        }
+
+        @Override
+        public void digest(byte[] result) {
+            int value = ~crc;
+            reset();
+            result[0] = (byte) (value >>> 24);
+            result[1] = (byte) (value >>> 16);
+            result[2] = (byte) (value >>> 8);
+            result[3] = (byte) value;
+        }
+
+        @Override
+        public void reset() {
+            crc = 0xFFFFFFFF;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Finds groups of files with equal content.
+ * <p>
+ * Files are grouped by size first, so files with unique size are never read. Files with equal size
+ * are grouped by hash of their first and last {@value #EDGE_SIZE} bytes, which only selects candidates:
+ * files of every candidate group are then read together block by block, once each, and split by content
+ * of blocks, so collisions of short hashes never produce duplicates and no file is hashed as a whole.
+ * Groups are compared in parallel; groups of at most {@value #MAX_OPEN_FILES} files keep their files open,
+ * files of larger groups are opened for every block.
+ * Empty files and other links to an already found file (equal file key) are skipped, since they don't take space.
+ * <p>
+ * Groups are reported by ascending size and files of group by ascending path, so report doesn't depend
+ * on order of walking.
+ */
+public class DuplicateFinder implements Closeable {
+    public static final int EDGE_SIZE = 4096;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_OPEN_FILES = 256;
+
+    private final WalkStatistics statistics;
+    private final ExecutorService service;
+    private final Map<Long, List<Path>> bySize = new TreeMap<>();
+    private final Set<Object> fileKeys = new HashSet<>();
+    private final ThreadLocal<Hasher> partialHasher;
+    private final ThreadLocal<ByteBuffer> edge = ThreadLocal.withInitial(() -> ByteBuffer.allocate(EDGE_SIZE));
+
+    /**
+     * Constructs {@code DuplicateFinder}.
+     *
+     * @param statistics statistics of walk.
+     * @param provider algorithm of partial hashes.
+     * @param threads count of hashing and comparing threads.
+     */
+    public DuplicateFinder(WalkStatistics statistics, HashProvider provider, int threads) {
+        this.statistics = statistics;
+        this.partialHasher = ThreadLocal.withInitial(provider::newHasher);
+        this.service = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Walks file tree from given root and remembers every found file.
+     *
+     * @param root root of file tree.
+     * @throws IOException if walking failed.
+     */
+    public void walk(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                add(file, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                statistics.addError();
+                MyFileVisitor.reportFailure(file, exc);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Remembers given file.
+     *
+     * @param file found file.
+     * @param attrs attributes of file.
+     */
+    public void add(Path file, BasicFileAttributes attrs) {
+        if (!attrs.isRegularFile() || attrs.size() == 0) {
+            return;
+        }
+        Object key = attrs.fileKey();
+        if (key != null && !fileKeys.add(key)) {
+            return;
+        }
+        bySize.computeIfAbsent(attrs.size(), size -> new ArrayList<>()).add(file);
+    }
+
+    /**
+     * Returns groups of files with equal content. Every group contains at least two files.
+     *
+     * @return groups of duplicates.
+     * @throws IOException if hashing was interrupted.
+     */
+    public List<Group> find() throws IOException {
+        List<Group> candidates = new ArrayList<>();
+        for (Map.Entry<Long, List<Path>> entry : bySize.entrySet()) {
+            if (entry.getValue().size() < 2) {
+                continue;
+            }
+            long size = entry.getKey();
+            List<Path> files = entry.getValue();
+            Collections.sort(files);
+            for (List<Path> partial : split(files, file -> partialDigest(file, size))) {
+                candidates.add(new Group(size, partial));
+            }
+        }
+
+        List<Group> result = new ArrayList<>();
+        for (List<Group> confirmed : applyAll(candidates, this::confirm)) {
+            result.addAll(confirmed);
+        }
+        return result;
+    }
+
+    /**
+     * Writes groups of duplicates and total count of bytes which can be reclaimed.
+     * <p>
+     * Every group is written as line "size count" followed by paths of files, groups are
+     * separated by empty lines.
+     *
+     * @param out {@code Writer} for report.
+     * @throws IOException if error with output occurred.
+     */
+    public void report(Writer out) throws IOException {
+        long files = 0;
+        long reclaimable = 0;
+        List<Group> groups = find();
+        for (Group group : groups) {
+            out.write(group.getSize() + " " + group.getFiles().size() + "\n");
+            for (Path file : group.getFiles()) {
+                out.write(file.toString() + "\n");
+            }
+            out.write("\n");
+            files += group.getFiles().size();
+            reclaimable += group.getReclaimable();
+        }
+        out.write(String.format("%d groups, %d files, %d bytes can be reclaimed%n", groups.size(), files, reclaimable));
+    }
+
+    private interface FileFunction<T, R> {
+        R apply(T file) throws IOException;
+    }
+
+    /**
+     * Applies function to every file by hashing threads. Result is null for files which can't be read.
+     */
+    private <T, R> List<R> applyAll(List<T> files, FileFunction<T, R> function) throws IOException {
+        List<Future<R>> futures = new ArrayList<>();
+        for (T file : files) {
+            futures.add(service.submit(() -> {
+                try {
+                    return function.apply(file);
+                } catch (IOException e) {
+                    System.out.println("Error while reading: " + file.toString() + " " + e.getMessage());
+                    return null;
+                }
+            }));
+        }
+
+        List<R> result = new ArrayList<>();
+        try {
+            for (Future<R> future : futures) {
+                result.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error while hashing", e.getCause());
+        }
+        return result;
+    }
+
+    private List<List<Path>> split(List<Path> files, FileFunction<Path, byte[]> digest) throws IOException {
+        List<byte[]> digests = applyAll(files, digest);
+        Map<ByteBuffer, List<Path>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            if (digests.get(i) != null) {
+                groups.computeIfAbsent(ByteBuffer.wrap(digests.get(i)), key -> new ArrayList<>()).add(files.get(i));
+            }
+        }
+
+        List<List<Path>> result = new ArrayList<>();
+        for (List<Path> group : groups.values()) {
+            if (group.size() > 1) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Splits candidate group into groups of equal content. Files are read block by block together:
+     * every block of file is compared with block of the first file of its class, which usually is
+     * the only one, and classes of one file are dropped at once.
+     */
+    private List<Group> confirm(Group candidate) {
+        long size = candidate.getSize();
+        List<Path> files = candidate.getFiles();
+        boolean keepOpen = files.size() <= MAX_OPEN_FILES;
+        FileChannel[] channels = new FileChannel[files.size()];
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        List<List<Integer>> classes = new ArrayList<>();
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            all.add(i);
+        }
+        classes.add(all);
+
+        try {
+            for (long position = 0; position < size && !classes.isEmpty(); position += BLOCK_SIZE) {
+                int length = (int) Math.min(BLOCK_SIZE, size - position);
+                List<List<Integer>> next = new ArrayList<>();
+                for (List<Integer> members : classes) {
+                    Map<ByteBuffer, List<Integer>> blocks = new LinkedHashMap<>();
+                    for (int i : members) {
+                        if (!readBlock(files, i, channels, keepOpen, buffer, position, length)) {
+                            continue;
+                        }
+                        List<Integer> equal = blocks.get(buffer);
+                        if (equal == null) {
+                            equal = new ArrayList<>();
+                            ByteBuffer copy = ByteBuffer.allocate(length);
+                            copy.put(buffer).flip();
+                            blocks.put(copy, equal);
+                        }
+                        equal.add(i);
+                    }
+                    for (List<Integer> equal : blocks.values()) {
+                        if (equal.size() > 1) {
+                            next.add(equal);
+                        } else {
+                            close(channels, equal.get(0));
+                        }
+                    }
+                }
+                classes = next;
+            }
+        } finally {
+            for (int i = 0; i < channels.length; i++) {
+                close(channels, i);
+            }
+        }
+
+        List<Group> result = new ArrayList<>();
+        for (List<Integer> equal : classes) {
+            List<Path> group = new ArrayList<>();
+            for (int i : equal) {
+                group.add(files.get(i));
+                statistics.addHashed(size);
+            }
+            result.add(new Group(size, group));
+        }
+        return result;
+    }
+
+    /**
+     * Reads block of i-th file into buffer. Files which can't be read are reported and closed.
+     */
+    private static boolean readBlock(List<Path> files, int i, FileChannel[] channels, boolean keepOpen,
+                                     ByteBuffer buffer, long position, int length) {
+        try {
+            if (channels[i] == null) {
+                channels[i] = FileChannel.open(files.get(i), StandardOpenOption.READ);
+            }
+            fill(channels[i], buffer, position, length);
+            if (!keepOpen) {
+                close(channels, i);
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error while reading: " + files.get(i).toString() + " " + e.getMessage());
+            close(channels, i);
+            return false;
+        }
+    }
+
+    private static void close(FileChannel[] channels, int i) {
+        if (channels[i] != null) {
+            try {
+                channels[i].close();
+            } catch (IOException ignored) {
+                // Channel is only read, so nothing is lost.
+            }
+            channels[i] = null;
+        }
+    }
+
+    private byte[] partialDigest(Path file, long size) throws IOException {
+        Hasher partial = partialHasher.get();
+        ByteBuffer buffer = edge.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (size <= 2 * EDGE_SIZE) {
+                readFully(channel, buffer, 0, size, partial);
+            } else {
+                readFully(channel, buffer, 0, EDGE_SIZE, partial);
+                readFully(channel, buffer, size - EDGE_SIZE, EDGE_SIZE, partial);
+            }
+            return partial.digest();
+        } finally {
+            partial.reset();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, long length,
+                                  Hasher partial) throws IOException {
+        for (long end = position + length; position < end; position += buffer.capacity()) {
+            fill(channel, buffer, position, (int) Math.min(buffer.capacity(), end - position));
+            partial.update(buffer);
+        }
+    }
+
+    /**
+     * Reads given count of bytes from given position into buffer and flips it.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("File was truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Stops hashing threads.
+     */
+    @Override
+    public void close() {
+        service.shutdownNow();
+    }
+
+    /**
+     * Group of files with equal content.
+     */
+    public static class Group {
+        private final long size;
+        private final List<Path> files;
+
+        private Group(long size, List<Path> files) {
+            this.size = size;
+            this.files = files;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public List<Path> getFiles() {
+            return files;
+        }
+
+        /**
+         * Returns count of bytes which would be freed if only one file of group is kept.
+         *
+         * @return count of bytes which can be reclaimed.
+         */
+        public long getReclaimable() {
+            return size * (files.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Computes hash of a single file by algorithm of given {@code HashProvider}.
+ * <p>
+ * The way file is read depends on its size: small files are read through {@code InputStream},
+ * files not smaller than {@code directThreshold} are read by {@code FileChannel} into reused direct
+ * {@code ByteBuffer} and files not smaller than {@code mappedThreshold} are mapped into memory.
+ * In the last two cases buffers are given to {@code Hasher} without copying to the heap.
+ * <p>
+ * If {@code HashIndex} is given, files which were not changed since the previous run are not read at all.
+ * <p>
+ * Every hashed file, hit of index and error is counted in {@code WalkStatistics}.
+ * <p>
+ * Every thread gets its own {@code Hasher}, read buffer, digest array and hex buffer which are reused
+ * for all files, so hashing and writing of a line allocate nothing but the objects of file system.
+ * Instances are thread-safe, so one {@code FileHasher} can be shared between threads.
+ */
+public class FileHasher {
+    public static final long DEFAULT_DIRECT_THRESHOLD = 64 * 1024;
+    public static final long DEFAULT_MAPPED_THRESHOLD = 64 * 1024 * 1024;
+
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    private static final int DIRECT_BUFFER_SIZE = 1024 * 1024;
+    private static final long MAPPED_REGION_SIZE = 1024 * 1024 * 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final ThreadLocal<ByteBuffer> DIRECT_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE));
+
+    private final HashProvider provider;
+    private final String zeroHash;
+    private final long directThreshold;
+    private final long mappedThreshold;
+    private final HashIndex index;
+    private final WalkStatistics statistics;
+    private final ThreadLocal<State> state;
+
+    /**
+     * Constructs {@code FileHasher} of MD5 with default thresholds.
+     */
+    public FileHasher() {
+        this(HashProvider.forName("md5"), DEFAULT_DIRECT_THRESHOLD, DEFAULT_MAPPED_THRESHOLD);
+    }
+
+    /**
+     * Constructs {@code FileHasher} with given algorithm and thresholds and without index.
+     *
+     * @param provider algorithm of hash.
+     * @param directThreshold minimal size of file which would be read into direct buffer.
+     * @param mappedThreshold minimal size of file which would be mapped into memory.
+     */
+    public FileHasher(HashProvider provider, long directThreshold, long mappedThreshold) {
+        this(provider, directThreshold, mappedThreshold, null, new WalkStatistics());
+    }
+
+    /**
+     * Constructs {@code FileHasher} with given algorithm, thresholds and index.
+     *
+     * @param provider algorithm of hash.
+     * @param directThreshold minimal size of file which would be read into direct buffer.
+     * @param mappedThreshold minimal size of file which would be mapped into memory.
+     * @param index index of previously computed hashes or {@code null}.
+     * @param statistics statistics to be updated.
+     */
+    public FileHasher(HashProvider provider, long directThreshold, long mappedThreshold, HashIndex index,
+                      WalkStatistics statistics) {
+        this.provider = provider;
+        char[] zeros = new char[provider.getDigestLength() * 2];
+        Arrays.fill(zeros, '0');
+        this.zeroHash = new String(zeros);
+        this.directThreshold = directThreshold;
+        this.mappedThreshold = mappedThreshold;
+        this.index = index;
+        this.statistics = statistics;
+        this.state = ThreadLocal.withInitial(() -> new State(provider));
+    }
+
+    /**
+     * Returns hex string of zeros which is written for files which can't be read.
+     *
+     * @return hex string of zeros of hash width.
+     */
+    public String getZeroHash() {
+        return zeroHash;
+    }
+
+    /**
+     * Returns statistics which are updated by this {@code FileHasher}.
+     *
+     * @return statistics of hashing.
+     */
+    public WalkStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns length of hash in bytes.
+     *
+     * @return length of hash.
+     */
+    public int getDigestLength() {
+        return provider.getDigestLength();
+    }
+
+    /**
+     * Hashes file and writes line "hash path" into given {@code Writer}.
+     * <p>
+     * If file can't be read, {@link #getZeroHash()} is written instead of hash.
+     *
+     * @param file file to be hashed.
+     * @param attrs attributes of file.
+     * @param out {@code Writer} for result line.
+     * @throws IOException if error with output occurred.
+     */
+    public void hash(Path file, BasicFileAttributes attrs, Writer out) throws IOException {
+        byte[] digest = state.get().digest;
+        write(out, digest(file, attrs, digest) ? digest : null, file);
+    }
+
+    /**
+     * Computes hash of file into given array.
+     *
+     * @param file file to be hashed.
+     * @param attrs attributes of file.
+     * @param result array of {@link #getDigestLength()} bytes to be filled by hash.
+     * @return true if file was hashed; false if it can't be read.
+     */
+    public boolean digest(Path file, BasicFileAttributes attrs, byte[] result) {
+        if (index != null && index.lookup(file, attrs, result)) {
+            statistics.addIndexHit();
+            return true;
+        }
+
+        State current = state.get();
+        Hasher hasher = current.hasher;
+        try {
+            long size = attrs.size();
+            if (size >= mappedThreshold) {
+                updateMapped(hasher, file);
+            } else if (size >= directThreshold) {
+                updateDirect(hasher, file);
+            } else {
+                updateStream(hasher, file, current.buffer);
+            }
+            hasher.digest(result);
+            if (index != null) {
+                index.put(file, attrs, result);
+            }
+            statistics.addHashed(attrs.size());
+            return true;
+        } catch (IOException e) {
+            hasher.reset();
+            statistics.addError();
+            System.out.println("Error while calculate " + provider.getName() + " hash: " + file.toString() + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes line "hash path" into given {@code Writer}.
+     *
+     * @param out {@code Writer} for result line.
+     * @param digest hash of file or {@code null} if file can't be read.
+     * @param file hashed file.
+     * @throws IOException if error with output occurred.
+     */
+    public void write(Writer out, byte[] digest, Path file) throws IOException {
+        if (digest == null) {
+            out.write(zeroHash);
+        } else {
+            char[] hex = state.get().hex;
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(digest[i] >>> 4) & 0xF];
+                hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+            }
+            out.write(hex, 0, 2 * digest.length);
+        }
+        out.write(' ');
+        out.write(file.toString());
+        out.write('\n');
+    }
+
+    private static void updateStream(Hasher hasher, Path file, byte[] part) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            int count;
+
+            while ((count = inputStream.read(part)) != -1) {
+                hasher.update(part, 0, count);
+            }
+        }
+    }
+
+    private static void updateDirect(Hasher hasher, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = DIRECT_BUFFER.get();
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    private static void updateMapped(Hasher hasher, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position)));
+            }
+        }
+    }
+
+    private static class State {
+        private final Hasher hasher;
+        private final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        private final byte[] digest;
+        private final char[] hex;
+
+        private State(HashProvider provider) {
+            hasher = provider.newHasher();
+            digest = new byte[provider.getDigestLength()];
+            hex = new char[2 * provider.getDigestLength()];
+        }
+    }
+}
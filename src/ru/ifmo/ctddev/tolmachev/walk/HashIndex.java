@@ -0,0 +1,343 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persistent index of file hashes which allows to skip reading of unchanged files on reruns.
+ * <p>
+ * Entries are keyed by absolute path and are valid while size, modification time and file key
+ * (inode on Unix) of the file stay the same. Only entries looked up or added during the current
+ * run are saved, so files which disappeared are dropped from the index.
+ * <p>
+ * File format (big-endian) : magic, version, algorithm name, digest length, entry count, entries, CRC32 of all
+ * preceding bytes. Entries are sorted by path, and paths are front coded: entry is varint count of UTF-8 bytes
+ * shared with the previous path, varint count and bytes of the rest of path, size, modification time
+ * in nanoseconds, file key, digest. File key is kind byte followed by device and inode numbers for Unix
+ * file keys, UTF-8 string of other keys or nothing if file system has no file keys.
+ * <p>
+ * Index is always rewritten into temporary file which is then atomically moved over the old one,
+ * and the directory is synced after move where platform allows it, so a crash leaves either old or new index.
+ */
+public class HashIndex {
+    private static final int MAGIC = 0x57414C4B;
+    private static final int VERSION = 3;
+    private static final byte NO_KEY = 0;
+    private static final byte UNIX_KEY = 1;
+    private static final byte STRING_KEY = 2;
+
+    private final HashProvider provider;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private HashIndex(HashProvider provider, Map<String, Entry> previous) {
+        this.provider = provider;
+        this.previous = previous;
+    }
+
+    /**
+     * Loads index from given file.
+     * <p>
+     * Missing, corrupted or incompatible index is reported and replaced by empty one.
+     *
+     * @param file index file.
+     * @param provider algorithm of stored hashes.
+     * @return loaded index.
+     */
+    public static HashIndex load(Path file, HashProvider provider) {
+        try {
+            return new HashIndex(provider, read(Files.readAllBytes(file), provider));
+        } catch (NoSuchFileException e) {
+            System.out.println("No index found, it would be created: " + file.toString());
+        } catch (EOFException e) {
+            System.out.println("Index is truncated and would be rebuilt: " + file.toString());
+        } catch (IOException e) {
+            System.out.println("Index is ignored: " + file.toString() + " " + e.getMessage());
+        }
+        return new HashIndex(provider, new HashMap<>());
+    }
+
+    /**
+     * Parses index after checking CRC of the whole file, so sizes read from corrupted file are never
+     * used to allocate memory. Sizes are also checked against count of remaining bytes.
+     */
+    private static Map<String, Entry> read(byte[] bytes, HashProvider provider) throws IOException {
+        if (bytes.length < Long.BYTES) {
+            throw new EOFException();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        if (ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong() != crc.getValue()) {
+            throw new IOException("Checksum mismatch");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unknown format");
+        }
+        int digestLength = provider.getDigestLength();
+        if (!readString(in).equals(provider.getName()) || in.readInt() != digestLength) {
+            throw new IOException("Index was built by another algorithm");
+        }
+
+        int count = in.readInt();
+        int minEntrySize = 3 + 2 * Long.BYTES + digestLength;
+        if (count < 0 || count > in.available() / minEntrySize) {
+            throw new IOException("Invalid entry count: " + count);
+        }
+        Map<String, Entry> entries = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+        byte[] path = new byte[0];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int shared = readVarInt(in, length);
+            int rest = readVarInt(in, in.available());
+            length = shared + rest;
+            if (length > path.length) {
+                path = Arrays.copyOf(path, Math.max(length, 2 * path.length));
+            }
+            in.readFully(path, shared, rest);
+            long size = in.readLong();
+            long modified = in.readLong();
+            String key = readFileKey(in);
+            byte[] digest = new byte[digestLength];
+            in.readFully(digest);
+            entries.put(new String(path, 0, length, StandardCharsets.UTF_8), new Entry(size, modified, key, digest));
+        }
+
+        if (in.read() != -1) {
+            throw new IOException("Unexpected data after entries");
+        }
+        return entries;
+    }
+
+    /**
+     * Copies stored digest of file into given array if file was not changed since it was stored.
+     *
+     * @param file file to look up.
+     * @param attrs current attributes of file.
+     * @param result array to be filled by stored digest.
+     * @return true if digest was found; false otherwise.
+     */
+    public boolean lookup(Path file, BasicFileAttributes attrs, byte[] result) {
+        String path = key(file);
+        Entry entry = previous.get(path);
+        if (entry == null || !entry.matches(attrs)) {
+            return false;
+        }
+        current.put(path, entry);
+        System.arraycopy(entry.digest, 0, result, 0, result.length);
+        return true;
+    }
+
+    /**
+     * Stores digest of file.
+     *
+     * @param file hashed file.
+     * @param attrs attributes of file at the moment of hashing.
+     * @param digest digest of file, it is copied.
+     */
+    public void put(Path file, BasicFileAttributes attrs, byte[] digest) {
+        current.put(key(file), new Entry(attrs.size(), modified(attrs), fileKey(attrs), digest.clone()));
+    }
+
+    /**
+     * Atomically replaces given file by entries of current run.
+     *
+     * @param file index file.
+     * @throws IOException if index can't be written.
+     */
+    public void save(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+                 CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream), new CRC32())) {
+                write(checked);
+                checked.flush();
+                stream.getFD().sync();
+            }
+            Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory(absolute.getParent());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Makes move into directory durable. Directories can't be opened or synced on some platforms,
+     * such as Windows, then move is left to the file system.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Sync of directory is best effort.
+        }
+    }
+
+    private void write(CheckedOutputStream checked) throws IOException {
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, provider.getName());
+        out.writeInt(provider.getDigestLength());
+        Map<String, Entry> sorted = new TreeMap<>(current);
+        out.writeInt(sorted.size());
+        byte[] previous = new byte[0];
+        for (Map.Entry<String, Entry> e : sorted.entrySet()) {
+            Entry entry = e.getValue();
+            byte[] path = e.getKey().getBytes(StandardCharsets.UTF_8);
+            int shared = sharedPrefix(previous, path);
+            writeVarInt(out, shared);
+            writeVarInt(out, path.length - shared);
+            out.write(path, shared, path.length - shared);
+            out.writeLong(entry.size);
+            out.writeLong(entry.modified);
+            writeFileKey(out, entry.fileKey);
+            out.write(entry.digest);
+            previous = path;
+        }
+        out.writeLong(checked.getChecksum().getValue());
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static int sharedPrefix(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < length && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int readVarInt(DataInputStream in, int max) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0 || value > max) {
+                    throw new IOException("Invalid length: " + value);
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes Unix file key, which is formatted by JDK as "(dev=hex,ino=decimal)", as two longs,
+     * if it is restored by {@link #unixKey} exactly, and other keys as strings.
+     */
+    private static void writeFileKey(DataOutputStream out, String key) throws IOException {
+        if (key.isEmpty()) {
+            out.writeByte(NO_KEY);
+            return;
+        }
+        int comma = key.indexOf(",ino=");
+        if (key.startsWith("(dev=") && comma > 0 && key.endsWith(")")) {
+            try {
+                long device = Long.parseUnsignedLong(key.substring(5, comma), 16);
+                long inode = Long.parseLong(key.substring(comma + 5, key.length() - 1));
+                if (unixKey(device, inode).equals(key)) {
+                    out.writeByte(UNIX_KEY);
+                    out.writeLong(device);
+                    out.writeLong(inode);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                // Not a Unix key, stored as string.
+            }
+        }
+        out.writeByte(STRING_KEY);
+        writeString(out, key);
+    }
+
+    private static String readFileKey(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case NO_KEY:
+                return "";
+            case UNIX_KEY:
+                return unixKey(in.readLong(), in.readLong());
+            case STRING_KEY:
+                return readString(in);
+            default:
+                throw new IOException("Unknown kind of file key: " + kind);
+        }
+    }
+
+    private static String unixKey(long device, long inode) {
+        return "(dev=" + Long.toHexString(device) + ",ino=" + inode + ")";
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static long modified(BasicFileAttributes attrs) {
+        return attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKey(BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        return key == null ? "" : key.toString();
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final String fileKey;
+        private final byte[] digest;
+
+        private Entry(long size, long modified, String fileKey, byte[] digest) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.digest = digest;
+        }
+
+        private boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && modified == modified(attrs) && fileKey.equals(fileKey(attrs));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+/**
+ * Hash algorithm which can be used by {@code FileHasher}.
+ * <p>
+ * Supported names are : md5, sha-256, crc32c, xxhash64.
+ */
+public interface HashProvider {
+    /**
+     * Returns name of algorithm.
+     *
+     * @return name of algorithm.
+     */
+    String getName();
+
+    /**
+     * Returns length of hash in bytes.
+     *
+     * @return length of hash.
+     */
+    int getDigestLength();
+
+    /**
+     * Creates new {@code Hasher}.
+     *
+     * @return new {@code Hasher} in the initial state.
+     */
+    Hasher newHasher();
+
+    /**
+     * Returns provider of algorithm with given name.
+     *
+     * @param name name of algorithm, case-insensitive.
+     * @return provider of algorithm.
+     * @throws IllegalArgumentException if algorithm is unknown.
+     */
+    static HashProvider forName(String name) {
+        switch (name.toLowerCase()) {
+            case "md5":
+                return new MessageDigestProvider("MD5");
+            case "sha-256":
+                return new MessageDigestProvider("SHA-256");
+            case "crc32c":
+                return new Crc32cProvider();
+            case "xxhash64":
+                return new XxHash64Provider();
+            default:
+                throw new IllegalArgumentException("Unknown hash algorithm: " + name);
+        }
+    }
+}
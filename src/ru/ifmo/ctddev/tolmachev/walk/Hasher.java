@@ -0,0 +1,45 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental computation of a single hash value.
+ *
+ * @see HashProvider
+ */
+public interface Hasher {
+    /**
+     * Updates hash by given bytes.
+     *
+     * @param bytes array of bytes.
+     * @param offset offset of the first byte.
+     * @param length count of bytes.
+     */
+    void update(byte[] bytes, int offset, int length);
+
+    /**
+     * Updates hash by remaining bytes of buffer. Buffer's position is moved to its limit.
+     *
+     * @param buffer buffer of bytes.
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Completes computation and resets {@code Hasher} to the initial state.
+     *
+     * @param result array of hash length to be filled by hash value in big-endian order.
+     */
+    void digest(byte[] result);
+
+    /**
+     * Completes computation and resets {@code Hasher} to the initial state.
+     *
+     * @return hash value in big-endian order.
+     */
+    byte[] digest();
+
+    /**
+     * Resets {@code Hasher} to the initial state.
+     */
+    void reset();
+}
@@ -0,0 +1,78 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * {@code HashProvider} over {@code MessageDigest} algorithm.
+ */
+public class MessageDigestProvider implements HashProvider {
+    private final String algorithm;
+    private final int digestLength;
+
+    /**
+     * Constructs provider of given {@code MessageDigest} algorithm.
+     *
+     * @param algorithm name of algorithm.
+     * @throws IllegalArgumentException if algorithm is not supported.
+     */
+    public MessageDigestProvider(String algorithm) {
+        this.algorithm = algorithm;
+        this.digestLength = getInstance(algorithm).getDigestLength();
+    }
+
+    private static MessageDigest getInstance(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(algorithm + " not supported.", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return algorithm;
+    }
+
+    @Override
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        MessageDigest md = getInstance(algorithm);
+        return new Hasher() {
+            @Override
+            public void update(byte[] bytes, int offset, int length) {
+                md.update(bytes, offset, length);
+            }
+
+            @Override
+            public void update(ByteBuffer buffer) {
+                md.update(buffer);
+            }
+
+            @Override
+            public void digest(byte[] result) {
+                try {
+                    md.digest(result, 0, result.length);
+                } catch (DigestException e) {
+                    throw new IllegalArgumentException("Wrong length of digest array: " + result.length, e);
+                }
+            }
+
+            @Override
+            public byte[] digest() {
+                return md.digest();
+            }
+
+            @Override
+            public void reset() {
+                md.reset();
+            }
+        };
+    }
+}
@@ -1,56 +1,44 @@
 package ru.ifmo.ctddev.tolmachev.walk;
 
-import javax.xml.bind.DatatypeConverter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 /**
  * Created by daniil on 13.02.16.
  */
 public class MyFileVisitor extends SimpleFileVisitor<Path> {
-    public static final String ZERO_STRING = "00000000000000000000000000000000 ";
-    private OutputStreamWriter out;
+    private Writer out;
+    private FileHasher hasher;
 
-    public MyFileVisitor(OutputStreamWriter out) {
+    public MyFileVisitor(Writer out) {
+        this(out, new FileHasher());
+    }
+
+    public MyFileVisitor(Writer out, FileHasher hasher) {
         this.out = out;
+        this.hasher = hasher;
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        try (InputStream inputStream = Files.newInputStream(file)) {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            md.reset();
-
-            byte[] part = new byte[1024];
-            int count;
-
-            while ((count = inputStream.read(part)) != -1) {
-                md.update(part, 0, count);
-            }
-
-            out.write(DatatypeConverter.printHexBinary(md.digest()) + " " + file.toString() + "\n");
-        } catch (IOException e) {
-            System.out.println("Error while calculate MD5 hash: " + file.toString() + e.getMessage());
-            out.write(ZERO_STRING + file.toString() + "\n");
-        } catch (NoSuchAlgorithmException e) {
-            System.out.println("MD5 not supported.");
-            return FileVisitResult.CONTINUE;
-        }
+        hasher.hash(file, attrs, out);
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-        out.write(ZERO_STRING + file.toString() + "\n");
+        hasher.write(out, null, file);
+        hasher.getStatistics().addError();
+        reportFailure(file, exc);
+        return FileVisitResult.CONTINUE;
+    }
 
+    static void reportFailure(Path file, IOException exc) {
         if (Files.notExists(file)) {
             System.out.println("No such file: " + file.toString());
         } else if (!Files.isReadable(file)) {
@@ -58,6 +46,5 @@ public class MyFileVisitor extends SimpleFileVisitor<Path> {
         } else {
             System.out.println("Visitor error: " + exc.getMessage());
         }
-        return FileVisitResult.CONTINUE;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,201 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walks file trees in the calling thread, hashes found files in a fixed pool of threads
+ * and writes result lines in a separate writer thread.
+ * <p>
+ * Lines are written in the same order in which files were visited, so output is identical
+ * to the output of sequential {@code MyFileVisitor}. Count of files which are visited but not
+ * written yet is bounded, so walking never runs far ahead of hashing. Hashing threads never wait
+ * for output: they only complete futures which are consumed by the writer thread.
+ * <p>
+ * Writer thread flushes given {@code Writer} at most once per {@code flushInterval},
+ * so results reach the file in chunks of its buffer size instead of line by line.
+ */
+public class ParallelWalker implements Closeable {
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private static final int PENDING_PER_THREAD = 64;
+    private static final Pending END = new Pending(null, null);
+
+    private final Writer out;
+    private final FileHasher hasher;
+    private final ExecutorService service;
+    private final BlockingQueue<Pending> pending;
+    private final long flushInterval;
+    private final Thread writer;
+    private volatile IOException error;
+
+    /**
+     * Constructs {@code ParallelWalker} which writes lines to given {@code Writer}
+     * and flushes it with default interval.
+     *
+     * @param out {@code Writer} for result lines.
+     * @param hasher {@code FileHasher} which would be used by all threads.
+     * @param threads count of hashing threads.
+     */
+    public ParallelWalker(Writer out, FileHasher hasher, int threads) {
+        this(out, hasher, threads, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Constructs {@code ParallelWalker} which writes lines to given {@code Writer}.
+     *
+     * @param out {@code Writer} for result lines.
+     * @param hasher {@code FileHasher} which would be used by all threads.
+     * @param threads count of hashing threads.
+     * @param flushInterval minimal interval between flushes of {@code out} in milliseconds.
+     */
+    public ParallelWalker(Writer out, FileHasher hasher, int threads, long flushInterval) {
+        this.out = out;
+        this.hasher = hasher;
+        this.service = Executors.newFixedThreadPool(threads);
+        this.pending = new ArrayBlockingQueue<>(threads * PENDING_PER_THREAD);
+        this.flushInterval = flushInterval;
+        this.writer = new Thread(this::writeAll, "walk-writer");
+        this.writer.start();
+    }
+
+    /**
+     * Walks file tree from given root and schedules hashing of every found file.
+     *
+     * @param root root of file tree.
+     * @throws IOException if error with output occurred.
+     */
+    public void walk(Path root) throws IOException {
+        Files.walkFileTree(root, new Visitor());
+    }
+
+    private void submit(Path file, Future<byte[]> digest) throws IOException {
+        checkError();
+        put(new Pending(file, digest));
+    }
+
+    private void put(Pending line) throws IOException {
+        try {
+            pending.put(line);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for writer");
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void writeAll() {
+        long lastFlush = System.currentTimeMillis();
+        boolean dirty = false;
+        try {
+            while (true) {
+                Pending line = pending.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (line == END) {
+                    break;
+                }
+                if (line != null && error == null) {
+                    write(line);
+                    dirty = true;
+                }
+
+                long now = System.currentTimeMillis();
+                if (dirty && error == null && now - lastFlush >= flushInterval) {
+                    flush();
+                    lastFlush = now;
+                    dirty = false;
+                }
+            }
+            if (error == null) {
+                flush();
+            }
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException("Writer was interrupted");
+        }
+    }
+
+    private void write(Pending line) throws InterruptedException {
+        try {
+            hasher.write(out, line.digest.get(), line.file);
+        } catch (ExecutionException e) {
+            error = new IOException("Error while hashing", e.getCause());
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Writes all pending lines and stops hashing and writer threads.
+     *
+     * @throws IOException if error with output occurred.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for writer");
+        } finally {
+            service.shutdownNow();
+        }
+        checkError();
+    }
+
+    private class Visitor extends SimpleFileVisitor<Path> {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            submit(file, service.submit(() -> {
+                byte[] digest = new byte[hasher.getDigestLength()];
+                return hasher.digest(file, attrs, digest) ? digest : null;
+            }));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+            submit(file, CompletableFuture.completedFuture(null));
+            hasher.getStatistics().addError();
+            MyFileVisitor.reportFailure(file, exc);
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    private static class Pending {
+        private final Path file;
+        private final Future<byte[]> digest;
+
+        private Pending(Path file, Future<byte[]> digest) {
+            this.file = file;
+            this.digest = digest;
+        }
+    }
+}
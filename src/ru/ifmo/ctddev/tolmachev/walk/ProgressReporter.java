@@ -0,0 +1,56 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes {@code WalkStatistics} through JMX while walk is running and, if interval is positive,
+ * prints progress line every interval and summary line on close.
+ * <p>
+ * Without printing, rates are still sampled every second, so JMX clients see current values.
+ */
+public class ProgressReporter implements Closeable {
+    private final WalkStatistics statistics;
+    private final long interval;
+    private final ObjectName name;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "walk-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs and starts {@code ProgressReporter}.
+     *
+     * @param statistics statistics of walk.
+     * @param interval interval between progress lines in seconds or zero to print nothing.
+     */
+    public ProgressReporter(WalkStatistics statistics, long interval) {
+        this.statistics = statistics;
+        this.interval = interval;
+        this.name = statistics.register();
+        if (interval > 0) {
+            timer.scheduleAtFixedRate(() -> {
+                statistics.sample();
+                System.out.println(statistics.progress());
+            }, interval, interval, TimeUnit.SECONDS);
+        } else {
+            timer.scheduleAtFixedRate(statistics::sample, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops reporting, prints summary if progress was printed and removes statistics from JMX.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        WalkStatistics.unregister(name);
+        if (interval > 0) {
+            System.out.println(statistics.summary());
+        }
+    }
+}
@@ -9,24 +9,43 @@ import java.nio.file.Paths;
 public class RecursiveWalk {
 
     public static void main(String[] args) {
-        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
-            System.out.println("Bad args");
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Use format : " + WalkOptions.FORMAT);
             return;
         }
 
-        Path inputFilePath = Paths.get(args[0]);
+        Path inputFilePath = Paths.get(options.getInput());
+        Path indexPath = options.getIndex() == null ? null : Paths.get(options.getIndex());
+        HashIndex index = indexPath == null ? null : HashIndex.load(indexPath, options.getProvider());
+        WalkStatistics statistics = new WalkStatistics();
+        FileHasher hasher = new FileHasher(options.getProvider(),
+                options.getDirectThreshold(), options.getMappedThreshold(), index, statistics);
 
+        ProgressReporter reporter = new ProgressReporter(statistics, options.getProgress());
         try (BufferedReader reader = Files.newBufferedReader(inputFilePath, StandardCharsets.UTF_8)) {
-            try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(args[1]), StandardCharsets.UTF_8)) {
-                String line = null;
-                while (true) {
-                    try {
-                        line = reader.readLine();
-                    } catch (IOException e) {
-                        System.out.println("Error while reading input file");
+            try (OutputStreamWriter writer = new OutputStreamWriter(new BufferedOutputStream(
+                    new FileOutputStream(options.getOutput()), options.getBatchSize()), StandardCharsets.UTF_8)) {
+                if (options.isDedup()) {
+                    try (DuplicateFinder finder = new DuplicateFinder(statistics, options.getProvider(), options.getThreads())) {
+                        walk(reader, finder::walk);
+                        finder.report(writer);
                     }
-                    if (line == null) break;
-                    Files.walkFileTree(Paths.get(line), new MyFileVisitor(writer));
+                } else if (options.isParallel()) {
+                    try (ParallelWalker walker = new ParallelWalker(writer, hasher,
+                            options.getThreads(), options.getFlushInterval())) {
+                        walk(reader, root -> walker.walk(root));
+                    }
+                } else {
+                    MyFileVisitor visitor = new MyFileVisitor(writer, hasher);
+                    walk(reader, root -> Files.walkFileTree(root, visitor));
+                }
+
+                if (index != null) {
+                    saveIndex(index, indexPath);
                 }
             } catch (FileNotFoundException e) {
                 System.out.println("Can't open output file");
@@ -41,6 +60,33 @@ public class RecursiveWalk {
         } catch (IOException e) {
             System.out.println("Error with input: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            reporter.close();
+        }
+    }
+
+    private static void saveIndex(HashIndex index, Path indexPath) {
+        try {
+            index.save(indexPath);
+        } catch (IOException e) {
+            System.out.println("Can't save index: " + e.getMessage());
+        }
+    }
+
+    private interface RootWalker {
+        void walk(Path root) throws IOException;
+    }
+
+    private static void walk(BufferedReader reader, RootWalker walker) throws IOException {
+        String line = null;
+        while (true) {
+            try {
+                line = reader.readLine();
+            } catch (IOException e) {
+                System.out.println("Error while reading input file");
+            }
+            if (line == null) break;
+            walker.walk(Paths.get(line));
         }
     }
 }
@@ -0,0 +1,154 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures hashing throughput of {@code FileHasher} on all files under given directory,
+ * throughput of every {@code HashProvider} on in-memory data and bytes allocated per written line.
+ * <p>
+ * Usage : WalkBenchmark directory [repeats].
+ * Corpus should be larger than page cache or be warmed up by the first repeat,
+ * otherwise results of different strategies are not comparable.
+ */
+public class WalkBenchmark {
+    private static final String[] ALGORITHMS = {"md5", "sha-256", "crc32c", "xxhash64"};
+    private static final int MEMORY_BLOCK_SIZE = 64 * 1024 * 1024;
+    private static final int MEMORY_CHUNK_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        if (args == null || args.length < 1 || args[0] == null) {
+            System.out.println("Use format : WalkBenchmark directory [repeats]");
+            return;
+        }
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        List<Path> files = new ArrayList<>();
+        List<BasicFileAttributes> attributes = new ArrayList<>();
+        Files.walkFileTree(Paths.get(args[0]), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                attributes.add(attrs);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        long total = attributes.stream().mapToLong(BasicFileAttributes::size).sum();
+        System.out.printf("%d files, %d bytes%n", files.size(), total);
+
+        HashProvider md5 = HashProvider.forName("md5");
+        for (int i = 0; i < repeats; i++) {
+            measure("stream", new FileHasher(md5, Long.MAX_VALUE, Long.MAX_VALUE), files, attributes, total);
+            measure("direct", new FileHasher(md5, 0, Long.MAX_VALUE), files, attributes, total);
+            measure("mmap", new FileHasher(md5, 0, 0), files, attributes, total);
+            measure("default", new FileHasher(), files, attributes, total);
+        }
+
+        byte[] data = new byte[MEMORY_BLOCK_SIZE];
+        new Random(0).nextBytes(data);
+        for (int i = 0; i < repeats; i++) {
+            for (String name : ALGORITHMS) {
+                measure(HashProvider.forName(name), data);
+            }
+        }
+
+        FileHasher hasher = new FileHasher();
+        for (int i = 0; i < repeats; i++) {
+            measureAllocation("per-file", (file, attrs, out) -> legacyHash(file, out), files, attributes);
+            measureAllocation("reused", hasher::hash, files, attributes);
+        }
+    }
+
+    private interface LineWriter {
+        void write(Path file, BasicFileAttributes attrs, Writer out) throws IOException;
+    }
+
+    private static void measureAllocation(String name, LineWriter lineWriter, List<Path> files,
+                                          List<BasicFileAttributes> attributes) throws IOException {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Writer out = new NullWriter();
+        long thread = Thread.currentThread().getId();
+
+        long before = bean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < files.size(); i++) {
+            lineWriter.write(files.get(i), attributes.get(i), out);
+        }
+        long allocated = bean.getThreadAllocatedBytes(thread) - before;
+        System.out.printf("%-8s %8d bytes allocated per file%n", name, allocated / Math.max(1, files.size()));
+    }
+
+    /**
+     * Hot path of {@code MyFileVisitor} before digests and buffers were reused, kept for comparison.
+     */
+    private static void legacyHash(Path file, Writer out) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] part = new byte[1024];
+            int count;
+            while ((count = inputStream.read(part)) != -1) {
+                md.update(part, 0, count);
+            }
+            out.write(DatatypeConverter.printHexBinary(md.digest()) + " " + file.toString() + "\n");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class NullWriter extends Writer {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void write(int c) {
+        }
+
+        @Override
+        public void write(String s) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void measure(HashProvider provider, byte[] data) {
+        Hasher hasher = provider.newHasher();
+        long start = System.nanoTime();
+        for (int offset = 0; offset < data.length; offset += MEMORY_CHUNK_SIZE) {
+            hasher.update(data, offset, Math.min(MEMORY_CHUNK_SIZE, data.length - offset));
+        }
+        hasher.digest();
+        long time = System.nanoTime() - start;
+        System.out.printf("%-8s %8.3f GB/s (memory)%n", provider.getName(), data.length / (double) time);
+    }
+
+    private static void measure(String name, FileHasher hasher, List<Path> files,
+                                List<BasicFileAttributes> attributes, long total) {
+        byte[] digest = new byte[hasher.getDigestLength()];
+        long start = System.nanoTime();
+        for (int i = 0; i < files.size(); i++) {
+            hasher.digest(files.get(i), attributes.get(i), digest);
+        }
+        long time = System.nanoTime() - start;
+        System.out.printf("%-8s %8.3f GB/s%n", name, total / (double) time);
+    }
+}
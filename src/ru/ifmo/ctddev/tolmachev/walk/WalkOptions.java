@@ -0,0 +1,182 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+/**
+ * Parsed command line of {@code RecursiveWalk}.
+ * <p>
+ * Format is given by {@link #FORMAT}.
+ */
+public class WalkOptions {
+    public static final String FORMAT = "RecursiveWalk input output [-threads count] [-direct bytes] [-mmap bytes]"
+            + " [-index file] [-algorithm md5|sha-256|crc32c|xxhash64] [-batch bytes] [-flush millis] [-dedup]"
+            + " [-progress seconds]";
+
+    public static final int DEFAULT_BATCH_SIZE = 1024 * 1024;
+
+    private final String input;
+    private final String output;
+    private int threads = 1;
+    private long directThreshold = FileHasher.DEFAULT_DIRECT_THRESHOLD;
+    private long mappedThreshold = FileHasher.DEFAULT_MAPPED_THRESHOLD;
+    private String index;
+    private HashProvider provider = HashProvider.forName("md5");
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long flushInterval = ParallelWalker.DEFAULT_FLUSH_INTERVAL;
+    private boolean dedup;
+    private long progress;
+
+    private WalkOptions(String input, String output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Parses given arguments.
+     *
+     * @param args command line arguments.
+     * @return parsed options.
+     * @throws IllegalArgumentException if arguments don't match {@link #FORMAT}.
+     */
+    public static WalkOptions parse(String[] args) {
+        if (args == null || args.length < 2 || args[0] == null || args[1] == null) {
+            throw new IllegalArgumentException("Bad args");
+        }
+
+        WalkOptions options = new WalkOptions(args[0], args[1]);
+        for (int i = 2; i < args.length; i++) {
+            if (args[i] == null) {
+                throw new IllegalArgumentException("Bad args");
+            }
+            switch (args[i]) {
+                case "-threads":
+                    options.threads = parsePositive(value(args, ++i));
+                    break;
+                case "-direct":
+                    options.directThreshold = parseSize(value(args, ++i));
+                    break;
+                case "-mmap":
+                    options.mappedThreshold = parseSize(value(args, ++i));
+                    break;
+                case "-index":
+                    options.index = value(args, ++i);
+                    break;
+                case "-algorithm":
+                    options.provider = HashProvider.forName(value(args, ++i));
+                    break;
+                case "-batch":
+                    options.batchSize = parsePositive(value(args, ++i));
+                    break;
+                case "-flush":
+                    options.flushInterval = parsePositive(value(args, ++i));
+                    break;
+                case "-progress":
+                    options.progress = parsePositive(value(args, ++i));
+                    break;
+                case "-dedup":
+                    options.dedup = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length || args[i] == null) {
+            throw new IllegalArgumentException("Value expected after " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    private static int parsePositive(String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result <= 0) {
+                throw new IllegalArgumentException("Positive number expected: " + value);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Number expected: " + value);
+        }
+    }
+
+    private static long parseSize(String value) {
+        try {
+            long result = Long.parseLong(value);
+            if (result < 0) {
+                throw new IllegalArgumentException("Non-negative number expected: " + value);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Number expected: " + value);
+        }
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getDirectThreshold() {
+        return directThreshold;
+    }
+
+    public long getMappedThreshold() {
+        return mappedThreshold;
+    }
+
+    /**
+     * Returns path of hash index file.
+     *
+     * @return path of index or {@code null} if index is not used.
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    public HashProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Returns size of output buffer, results are written to the file by chunks of this size.
+     *
+     * @return size of output buffer in bytes.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Checks if duplicates should be reported instead of hashes.
+     *
+     * @return true if duplicates should be reported; false otherwise.
+     */
+    public boolean isDedup() {
+        return dedup;
+    }
+
+    /**
+     * Returns interval between progress lines.
+     *
+     * @return interval in seconds or zero if progress should not be printed.
+     */
+    public long getProgress() {
+        return progress;
+    }
+
+    public boolean isParallel() {
+        return threads > 1;
+    }
+}
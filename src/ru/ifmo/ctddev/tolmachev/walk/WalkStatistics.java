@@ -0,0 +1,172 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a walk : files, hashed bytes, errors and hits of hash index.
+ * <p>
+ * Counters are updated by hashing threads without contention. Current rates are computed by
+ * {@link #sample()} which is called periodically by {@code ProgressReporter}. High process CPU load
+ * together with low throughput means that walk is CPU-bound, low load means it waits for I/O.
+ * <p>
+ * Statistics can be exposed through JMX by {@link #register()}.
+ */
+public class WalkStatistics implements WalkStatisticsMBean {
+    private static final String OBJECT_NAME = "ru.ifmo.ctddev.tolmachev.walk:type=WalkStatistics";
+    private static final double MEGABYTE = 1024 * 1024;
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder indexHits = new LongAdder();
+    private final long start = System.nanoTime();
+
+    private long lastTime = start;
+    private long lastFiles;
+    private long lastBytes;
+    private volatile double filesPerSecond;
+    private volatile double megabytesPerSecond;
+
+    /**
+     * Counts file which was read and hashed.
+     *
+     * @param size count of hashed bytes.
+     */
+    public void addHashed(long size) {
+        files.increment();
+        bytes.add(size);
+    }
+
+    /**
+     * Counts file which hash was taken from index.
+     */
+    public void addIndexHit() {
+        files.increment();
+        indexHits.increment();
+    }
+
+    /**
+     * Counts file which can't be visited or read.
+     */
+    public void addError() {
+        files.increment();
+        errors.increment();
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getIndexHits() {
+        return indexHits.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    @Override
+    public double getMegabytesPerSecond() {
+        return megabytesPerSecond;
+    }
+
+    @Override
+    public double getProcessCpuLoad() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuLoad();
+        }
+        return -1;
+    }
+
+    /**
+     * Updates current rates by counters changed since the previous call.
+     */
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        long currentFiles = getFiles();
+        long currentBytes = getBytes();
+        double seconds = (now - lastTime) / 1e9;
+        if (seconds > 0) {
+            filesPerSecond = (currentFiles - lastFiles) / seconds;
+            megabytesPerSecond = (currentBytes - lastBytes) / MEGABYTE / seconds;
+        }
+        lastTime = now;
+        lastFiles = currentFiles;
+        lastBytes = currentBytes;
+    }
+
+    /**
+     * Returns progress line with counters and current rates.
+     *
+     * @return progress line.
+     */
+    public String progress() {
+        return String.format("files: %d (%.0f/s), hashed: %.1f MB (%.1f MB/s), errors: %d, cpu: %.0f%%",
+                getFiles(), filesPerSecond, getBytes() / MEGABYTE, megabytesPerSecond,
+                getErrors(), 100 * getProcessCpuLoad());
+    }
+
+    /**
+     * Returns summary line with counters and average rates since creation.
+     *
+     * @return summary line.
+     */
+    public String summary() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        return String.format("Done in %.1f s: files: %d (%.0f/s), hashed: %.1f MB (%.1f MB/s), index hits: %d, errors: %d",
+                seconds, getFiles(), getFiles() / seconds, getBytes() / MEGABYTE, getBytes() / MEGABYTE / seconds,
+                getIndexHits(), getErrors());
+    }
+
+    /**
+     * Registers statistics in platform {@code MBeanServer}.
+     *
+     * @return name of registered bean or {@code null} if it can't be registered.
+     */
+    public ObjectName register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            return name;
+        } catch (JMException e) {
+            System.out.println("Can't register statistics in JMX: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Removes bean with given name from platform {@code MBeanServer}.
+     *
+     * @param name name returned by {@link #register()}.
+     */
+    public static void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(name);
+        } catch (JMException e) {
+            System.out.println("Can't unregister statistics from JMX: " + e.getMessage());
+        }
+    }
+}
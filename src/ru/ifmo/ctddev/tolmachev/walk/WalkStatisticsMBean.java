@@ -0,0 +1,20 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+/**
+ * Management interface of {@code WalkStatistics}.
+ */
+public interface WalkStatisticsMBean {
+    long getFiles();
+
+    long getBytes();
+
+    long getErrors();
+
+    long getIndexHits();
+
+    double getFilesPerSecond();
+
+    double getMegabytesPerSecond();
+
+    double getProcessCpuLoad();
+}
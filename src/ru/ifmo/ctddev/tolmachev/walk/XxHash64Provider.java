@@ -0,0 +1,145 @@
+package ru.ifmo.ctddev.tolmachev.walk;
+
+/**
+ * {@code HashProvider} of 64-bit xxHash with zero seed.
+ * <p>
+ * Non-cryptographic hash which is fast enough to be limited by memory bandwidth.
+ */
+public class XxHash64Provider implements HashProvider {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    @Override
+    public String getName() {
+        return "XXHASH64";
+    }
+
+    @Override
+    public int getDigestLength() {
+        return 8;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new XxHash64Hasher();
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long getLong(byte[] b, int i) {
+        return (b[i] & 0xFFL) | (b[i + 1] & 0xFFL) << 8 | (b[i + 2] & 0xFFL) << 16 | (b[i + 3] & 0xFFL) << 24
+                | (b[i + 4] & 0xFFL) << 32 | (b[i + 5] & 0xFFL) << 40 | (b[i + 6] & 0xFFL) << 48 | (b[i + 7] & 0xFFL) << 56;
+    }
+
+    private static long getInt(byte[] b, int i) {
+        return (b[i] & 0xFFL) | (b[i + 1] & 0xFFL) << 8 | (b[i + 2] & 0xFFL) << 16 | (b[i + 3] & 0xFFL) << 24;
+    }
+
+    private static class XxHash64Hasher extends ArrayHasher {
+        private final byte[] stripe = new byte[32];
+        private int stripeSize;
+        private long total;
+        private long v1, v2, v3, v4;
+
+        private XxHash64Hasher() {
+            super(8);
+            reset();
+        }
+
+        @Override
+        public void reset() {
+            v1 = PRIME1 + PRIME2;
+            v2 = PRIME2;
+            v3 = 0;
+            v4 = -PRIME1;
+            stripeSize = 0;
+            total = 0;
+        }
+
+        private void consume(byte[] b, int i) {
+            v1 = round(v1, getLong(b, i));
+            v2 = round(v2, getLong(b, i + 8));
+            v3 = round(v3, getLong(b, i + 16));
+            v4 = round(v4, getLong(b, i + 24));
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            total += length;
+            int end = offset + length;
+
+            if (stripeSize > 0) {
+                int count = Math.min(32 - stripeSize, length);
+                System.arraycopy(bytes, offset, stripe, stripeSize, count);
+                stripeSize += count;
+                offset += count;
+                if (stripeSize < 32) {
+                    return;
+                }
+                consume(stripe, 0);
+                stripeSize = 0;
+            }
+
+            for (; offset + 32 <= end; offset += 32) {
+                consume(bytes, offset);
+            }
+
+            stripeSize = end - offset;
+            System.arraycopy(bytes, offset, stripe, 0, stripeSize);
+        }
+
+        @Override
+        public void digest(byte[] result) {
+            long h;
+            if (total >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = mergeRound(h, v1);
+                h = mergeRound(h, v2);
+                h = mergeRound(h, v3);
+                h = mergeRound(h, v4);
+            } else {
+                h = PRIME5;
+            }
+            h += total;
+
+            int i = 0;
+            for (; i + 8 <= stripeSize; i += 8) {
+                h ^= round(0, getLong(stripe, i));
+                h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+            }
+            if (i + 4 <= stripeSize) {
+                h ^= getInt(stripe, i) * PRIME1;
+                h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+                i += 4;
+            }
+            for (; i < stripeSize; i++) {
+                h ^= (stripe[i] & 0xFFL) * PRIME5;
+                h = Long.rotateLeft(h, 11) * PRIME1;
+            }
+
+            h ^= h >>> 33;
+            h *= PRIME2;
+            h ^= h >>> 29;
+            h *= PRIME3;
+            h ^= h >>> 32;
+
+            reset();
+            for (int j = 7; j >= 0; j--) {
+                result[j] = (byte) h;
+                h >>>= 8;
+            }
+        }
+    }
+}